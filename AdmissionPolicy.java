@@ -0,0 +1,36 @@
+/*
+ * Ordem em que o Banqueiro avalia as requisições que estão esperando a cada liberação
+ * (ver Banker.dispatchWaiting). Toda requisição que passa a caber e mantém o estado seguro
+ * é concedida; a política decide quem tem a primeira chance sobre o que foi devolvido.
+ *
+ *  - FIFO:           ordem de chegada;
+ *  - SHORTEST_FIRST: menor requisição (soma das unidades) primeiro, o que concede mais
+ *                    requisições por liberação mas pode deixar as grandes esperando sempre;
+ *  - PRIORITY:       classe de prioridade do cliente (0 é a mais alta), FIFO dentro da classe;
+ *  - AGING:          como PRIORITY, mas a requisição sobe uma classe a cada 'agingNanos'
+ *                    esperando. A primeira da ordem que já esperou pelo menos 'agingNanos' e
+ *                    ainda não cabe no disponível passa a ter uma reserva: as outras requisições
+ *                    só podem usar o que sobrar além dela, então o que for sendo devolvido se
+ *                    acumula para ela em vez de ser consumido por requisições menores.
+ */
+enum AdmissionPolicy {
+    FIFO,
+    SHORTEST_FIRST,
+    PRIORITY,
+    AGING;
+
+    // Chave de ordenação (menor primeiro); empates ficam na ordem de chegada
+    long rank(PendingRequest pending, long now, long agingNanos) {
+        switch (this) {
+            case SHORTEST_FIRST: return pending.size;
+            case PRIORITY: return pending.priority;
+            case AGING: return pending.priority - (now - pending.enqueuedAt) / agingNanos;
+            default: return 0;
+        }
+    }
+
+    // Aceita o nome em qualquer caixa e com '-' no lugar de '_' (ex.: "shortest-first")
+    static AdmissionPolicy parse(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -1,59 +1,344 @@
-import java.util.concurrent.locks.Condition;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.Arrays;
 
 class Banker {
-    /* o montante disponível de cada recurso */
-    private int available[];
+    /* matrizes available, maximum, allocation e need (ver BankerState) */
+    private final BankerState state;
 
-    /* a demanda máxima de cada cliente */
-    private int maximum[][];
+    // Lock para controlar o acesso às instâncias de dados compartilhadas
+    private final ReentrantLock lock = new ReentrantLock();
 
-    /* o montante correntemente alocado a cada cliente */
-    private int allocation[][];
+    // Contadores e histogramas de latência (ver BankerMetrics)
+    private final BankerMetrics metrics = new BankerMetrics();
 
-    /* a necessidade remanescente de cada cliente */
-    private int need[][];
+    // Instante em que a trava foi adquirida (válido só enquanto a trava está com a thread atual)
+    private long lockAcquiredAt;
 
-    // Lock para controlar o acesso às instâncias de dados compartilhadas
-    private final ReentrantLock lock = new ReentrantLock();
+    // Registro de eventos (desligado por padrão; ver setEventLog)
+    private EventLog log = EventLog.DISABLED;
 
-    // Variável de condição para threads esperarem por recursos
-    private final Condition resourcesAvailable = lock.newCondition();
+    // Fila de requisições esperando por recursos (cada uma com sua própria variável de condição)
+    private final WaitQueue waiting = new WaitQueue();
 
-    public Banker(int[] available, int[][] maxNeeds){
-        this.available = Arrays.copyOf(available, Constants.NUMBER_OF_RESOURCES);
-        this.maximum = maxNeeds; // Referenciamos o maxNeeds pois não precisaremos alterar seu valor
-        // Garbage Collector garante que todos valores do 'allocation' serão 0
-        this.allocation = new int[Constants.NUMBER_OF_CUSTOMERS][Constants.NUMBER_OF_RESOURCES];
-        this.need = new int[Constants.NUMBER_OF_CUSTOMERS][Constants.NUMBER_OF_RESOURCES];
+    // Ordem em que a fila é avaliada a cada liberação (ver AdmissionPolicy) e passo do envelhecimento
+    private AdmissionPolicy policy = AdmissionPolicy.FIFO;
+    private long agingNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Classe de prioridade de cada slot de cliente (0 = mais alta; ver setPriority)
+    private int[] priorities = new int[0];
+
+    // Requisição para a qual o que é devolvido está sendo acumulado (AGING); só vale enquanto
+    // ela estiver na fila (ver fitsUnreserved)
+    private PendingRequest reserved;
+
+    // Reserva imposta pelo TraceReplay (o vetor reservado), no lugar da calculada pela fila;
+    // a reprodução sequencial não tem fila, então aplica as reservas como foram gravadas
+    private int[] replayedReservation;
+
+    // Rascunhos da varredura ordenada da fila e do teste da reserva
+    private PendingRequest[] order = new PendingRequest[0];
+    private int[] reachable;
 
-        
+    private static final Comparator<PendingRequest> BY_RANK = Comparator.comparingLong((PendingRequest pending) -> pending.rank);
 
-        // Inicializa a matriz need: need[i][j] = maximum[i][j] - allocation[i][j] (que nesse instante seria 0 para todos)
-        for (int i = 0; i < Constants.NUMBER_OF_CUSTOMERS; i++) {
-            for (int j = 0; j < Constants.NUMBER_OF_RESOURCES; j++) {
-                this.need[i][j] = this.maximum[i][j] - this.allocation[i][j];
+    // Requisições assíncronas decididas sob a trava, encadeadas por 'next', que serão
+    // completadas só depois de destravar (ver unlockAndComplete)
+    private PendingRequest decidedAsync;
+
+    // Gravação das operações para reprodução (null = não grava; ver TraceRecorder)
+    private TraceRecorder trace;
+
+    public Banker(int[] available, int[][] maxNeeds){
+        this(available, maxNeeds, new ClassicSafetyCheck());
+    }
+
+    /*
+     * Permite escolher a estratégia de checagem de segurança (ver SafetyCheck). Lança
+     * IllegalArgumentException se alguma demanda máxima tiver a quantidade de recursos errada
+     * ou passar do total, as mesmas demandas que registerCustomer recusa.
+     */
+    public Banker(int[] available, int[][] maxNeeds, SafetyCheck safetyCheck){
+        this(available, maxNeeds.length, safetyCheck);
+        for (int i = 0; i < maxNeeds.length; i++) {
+            if (maxNeeds[i].length != state.resources || !state.fitsTotal(maxNeeds[i])) {
+                throw new IllegalArgumentException("Demanda máxima inválida para o cliente " + i);
             }
+            state.register(maxNeeds[i]);
         }
+        state.publish();
 
         System.out.println("Banqueiro inicializado.");
         printCurrentState();
     }
 
+    /*
+     * Banqueiro dimensionado em tempo de execução: a quantidade de recursos vem do vetor
+     * 'available' e os clientes são registrados depois com 'registerCustomer'.
+     * 'initialCapacity' é apenas uma estimativa; a capacidade cresce conforme necessário.
+     */
+    public Banker(int[] available, int initialCapacity, SafetyCheck safetyCheck){
+        this.state = new BankerState(available, initialCapacity, safetyCheck);
+        this.state.safetyCheckTimes = metrics.safetyCheckTime;
+        this.state.fastPathGrants = metrics.fastPathGrants;
+    }
+
+    /*
+     * Banqueiro persistente: se o diretório do journal já tem estado, os clientes são recuperados
+     * nos mesmos identificadores, com suas alocações, e 'available' é ignorado; senão começa vazio
+     * como no construtor acima. A partir daí todo estado confirmado vai para o journal.
+     * Lança IOException se o estado recuperado for inválido ou inseguro (nada é regravado).
+     */
+    public Banker(int[] available, int initialCapacity, SafetyCheck safetyCheck, BankerJournal journal) throws IOException {
+        this(journal.hasState() ? journal.recoveredTotal() : available, initialCapacity, safetyCheck);
+        if (journal.hasState() && !restore(journal.recoveredMaximum(), journal.recoveredAllocation())) {
+            throw new IOException("Estado recuperado do journal é inválido ou inseguro.");
+        }
+        state.publish();
+        journal.attach(state);
+        state.journal = journal;
+    }
+
+    /*
+     * Banqueiro que já começa com clientes alocados: o slot i recebe maximum[i] e allocation[i]
+     * (null = slot vazio) e o disponível é 'total' menos as alocações. Usado ao fundir
+     * componentes de um PartitionedBanker. Lança IllegalArgumentException se o estado for
+     * inválido ou inseguro.
+     */
+    Banker(int[] total, int[][] maximum, int[][] allocation, SafetyCheck safetyCheck){
+        this(total, Math.max(16, maximum.length), safetyCheck);
+        if (!restore(maximum, allocation)) throw new IllegalArgumentException("Estado restaurado é inseguro.");
+        state.publish();
+    }
+
+    /*
+     * Recoloca os clientes nos mesmos slots, com suas alocações. Devolve false se alguma linha for
+     * inválida (demanda acima do total, alocação negativa ou acima da demanda), se as alocações
+     * passarem do total ou se o estado for inseguro.
+     */
+    private boolean restore(int[][] maximum, int[][] allocation){
+        for (int slot = 0; slot < maximum.length; slot++) {
+            if (maximum[slot] == null) continue;
+            if (maximum[slot].length != state.resources || !state.fitsTotal(maximum[slot])) return false;
+            if (!state.isWellFormed(allocation[slot])) return false;
+            for (int j = 0; j < state.resources; j++) {
+                if (allocation[slot][j] > maximum[slot][j]) return false;
+            }
+            state.restore(slot, maximum[slot], allocation[slot]);
+        }
+        for (int j = 0; j < state.resources; j++) {
+            if (state.available[j] < 0) return false;
+        }
+        return state.finishRestore();
+    }
+
+    public BankerMetrics getMetrics(){
+        return metrics;
+    }
+
+    /*
+     * Define para onde vão os eventos do Banqueiro (requisições, concessões, liberações, erros).
+     * Os eventos são registrados sob a trava, mas formatados e escritos por uma thread de fundo.
+     */
+    public void setEventLog(EventLog log){
+        lockBanker();
+        try {
+            this.log = log;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Começa a gravar as operações no trace (ou para, com null). Os clientes já registrados,
+     * suas alocações e prioridades, a política de admissão e a reserva atual entram no início do
+     * trace, assim a reprodução parte do mesmo estado.
+     */
+    public void setTraceRecorder(TraceRecorder trace){
+        lockBanker();
+        try {
+            if (trace != null) trace.begin(state, policy, agingNanos, priorities);
+            this.trace = trace;
+            if (reserved != null && reserved.queued) {
+                trace(TraceRecorder.Type.RESERVED, reserved.customer, TraceRecorder.Outcome.GRANTED, reserved.request);
+            }
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Define a ordem em que as requisições que estão esperando são avaliadas a cada liberação
+     * (ver AdmissionPolicy). 'agingMillis' só é usado por AGING: a cada intervalo desses
+     * esperando, a requisição sobe uma classe de prioridade e pode passar a ter uma reserva.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy policy, long agingMillis){
+        if (agingMillis <= 0) throw new IllegalArgumentException("Intervalo de envelhecimento deve ser positivo.");
+        lockBanker();
+        try {
+            this.policy = policy;
+            this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+            if (trace != null) {
+                trace.record(TraceRecorder.Type.POLICY, -1, TraceRecorder.Outcome.GRANTED, null, policy.ordinal(), agingNanos);
+            }
+            dispatchWaiting(); // a nova ordem (e a reserva, se houver) já vale para a fila atual
+        } finally {
+            unlockAndComplete();
+        }
+    }
+
+    public AdmissionPolicy getAdmissionPolicy(){
+        lockBanker();
+        try {
+            return policy;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Define a classe de prioridade do cliente (0 é a mais alta), usada pelas políticas PRIORITY
+     * e AGING. Vale para as próximas requisições; as que já estão na fila mantêm a classe com
+     * que entraram. Devolve -1 se o cliente não estiver registrado ou a classe for negativa.
+     */
+    public int setPriority(int customerNum, int priority){
+        if (priority < 0) return -1;
+        lockBanker();
+        try {
+            if (!state.isActive(customerNum)) {
+                log.log(EventLog.Event.NOT_REGISTERED, customerNum);
+                return -1;
+            }
+            storePriority(customerNum, priority);
+            if (trace != null) {
+                trace.record(TraceRecorder.Type.PRIORITY, customerNum, TraceRecorder.Outcome.GRANTED, null, priority, 0);
+            }
+            return 0;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    private void storePriority(int customerNum, int priority) {
+        if (customerNum >= priorities.length) {
+            priorities = Arrays.copyOf(priorities, Math.max(customerNum + 1, 2 * priorities.length));
+        }
+        priorities[customerNum] = priority;
+    }
+
+    private int priorityOf(int customerNum) {
+        return customerNum < priorities.length ? priorities[customerNum] : 0;
+    }
+
+    public EventLog getEventLog(){
+        lockBanker();
+        try {
+            return log;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    public int getNumberOfResources(){
+        return state.resources;
+    }
+
+    public int getNumberOfCustomers(){
+        lockBanker();
+        try {
+            return state.activeCustomers;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Registra um novo cliente com sua demanda máxima e devolve seu identificador,
+     * ou -1 se a demanda for inválida.
+     * Um cliente novo não tem nada alocado, então pode ser colocado no fim de qualquer
+     * sequência segura: basta que sua demanda máxima caiba no total de recursos.
+     */
+    public int registerCustomer(int[] maxNeed){
+        return registerCustomer(maxNeed, 0);
+    }
+
+    // Igual a registerCustomer, já com a classe de prioridade do cliente (ver setPriority)
+    public int registerCustomer(int[] maxNeed, int priority){
+        if (maxNeed.length != state.resources || priority < 0) return -1;
+
+        lockBanker();
+        try {
+            if (!state.fitsTotal(maxNeed)) {
+                log.log(EventLog.Event.EXCEEDS_TOTAL, -1, maxNeed);
+                return -1;
+            }
+            int customerNum = state.register(maxNeed);
+            storePriority(customerNum, priority);
+            if (trace != null) {
+                trace.record(TraceRecorder.Type.REGISTER, customerNum, TraceRecorder.Outcome.GRANTED, maxNeed, priority, 0);
+            }
+            return customerNum;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Remove o cliente do banqueiro. Tudo que estava alocado a ele volta ao disponível
+     * e seu identificador pode ser reaproveitado por um cliente registrado depois.
+     */
+    public int deregisterCustomer(int customerNum){
+        lockBanker();
+        try {
+            if (!state.isActive(customerNum)) {
+                log.log(EventLog.Event.NOT_REGISTERED, customerNum);
+                return -1;
+            }
+            // Requisições do cliente que ainda estavam esperando são canceladas
+            PendingRequest pending = waiting.first();
+            while (pending != null) {
+                PendingRequest next = pending.next;
+                if (pending.customer == customerNum) {
+                    waiting.remove(pending);
+                    pending.cancelled = true;
+                    metrics.waitsAbandoned.increment();
+                    trace(TraceRecorder.Type.ABANDONED, customerNum, TraceRecorder.Outcome.WAITING, pending.request);
+                    wake(pending);
+                }
+                pending = next;
+            }
+
+            state.deregister(customerNum);
+            trace(TraceRecorder.Type.DEREGISTER, customerNum, TraceRecorder.Outcome.GRANTED, null);
+            log.log(EventLog.Event.DEREGISTERED, customerNum, state.available);
+
+            // Os recursos devolvidos podem destravar clientes esperando (ver releaseResources)
+            dispatchWaiting();
+            return 0;
+        } finally {
+            unlockAndComplete();
+        }
+    }
+
     // Print organizado sobre o estado atual do sistema (disponível, alocação, necessidade)
     public void printCurrentState() {
+        BankerSnapshot snapshot = snapshot(); // todas as linhas do mesmo instante
         System.out.println("\n--- Estado Atual ---");
-        System.out.println("Available: " + Arrays.toString(available));
+        System.out.println("Available: " + Arrays.toString(snapshot.getAvailable()));
 
         System.out.println("Allocation:");
-        for (int i = 0; i < Constants.NUMBER_OF_CUSTOMERS; i++) {
-            System.out.println("  Cliente " + i + ": " + Arrays.toString(allocation[i]));
+        for (int i = 0; i < snapshot.getNumberOfSlots(); i++) {
+            if (!snapshot.isActive(i)) continue;
+            System.out.println("  Cliente " + i + ": " + Arrays.toString(snapshot.getAllocationRow(i)));
         }
 
         System.out.println("Need:");
-        for (int i = 0; i < Constants.NUMBER_OF_CUSTOMERS; i++) {
-            System.out.println("  Cliente " + i + ": " + Arrays.toString(need[i]));
+        for (int i = 0; i < snapshot.getNumberOfSlots(); i++) {
+            if (!snapshot.isActive(i)) continue;
+            System.out.println("  Cliente " + i + ": " + Arrays.toString(snapshot.getNeedRow(i)));
         }
         System.out.println("--------------------");
     }
@@ -67,244 +352,684 @@ class Banker {
          * a trava será liberada para que alguma outra instância lhe assuma e prossiga
          * com seus comandos até ser sinalizada sua liberação.
          
-         * A liberação acontece por meio do 'signalAll()' e, quando feita, sinaliza para que
-         * todas instâncias que estiverem esperando pela liberação da trava 'apostem corrida' 
-         * para assumir 'ownership' da trava, assim seguindo adiante com seus comandos.
+         * A liberação acontece por meio do 'signal()' da condição própria de cada requisição
+         * pendente: quem libera recursos já concede as requisições que passaram a caber
+         * (ver dispatchWaiting) e acorda somente as threads correspondentes.
         */
-        lock.lock();
+        lockBanker();
 
         try{
-            System.out.println("Cliente " + customerNum + " solicitando: " + Arrays.toString(request));
+            log.log(EventLog.Event.REQUEST, customerNum, request);
+            RequestResult result = decide(customerNum, request);
+            if (result.mustWait()) result = awaitGrant(customerNum, request, result, -1);
+            return result.toCode();
+        } finally {
+            unlockAndComplete(); // Destrava mesmo que hajam erros, assim a próxima requisição sempre vai rodar
+        }
+    }
 
-            // --- Algoritmo do Banqueiro (REQUISIÇÃO) ---
+    /*
+     * Igual a requestResources, mas desiste quando o prazo acaba: a requisição sai da fila e o
+     * resultado é TIMED_OUT. Com prazo zero ou negativo equivale a tryRequestResources.
+     * Devolve o motivo em vez de -1 (ver RequestResult).
+     */
+    public RequestResult requestResources(int customerNum, int[] request, long timeout, TimeUnit unit){
+        long nanos = unit.toNanos(timeout);
+        if (nanos <= 0) return tryRequestResources(customerNum, request);
 
-            // ! Passo 1: Verificar se a Request > Need (Solicitação <= Necessidade)
-            // (requisição pede por mais do que há de recursos necessários (máximo))
-            for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
-                if (request[i] > need[customerNum][i]) {
-                    System.out.println("Cliente " + customerNum + ": Erro! Requisição excede a necessidade máxima.");
-                    return -1; 
-                }
+        lockBanker();
+
+        try {
+            log.log(EventLog.Event.REQUEST, customerNum, request);
+            RequestResult result = decide(customerNum, request);
+            return result.mustWait() ? awaitGrant(customerNum, request, result, nanos) : result;
+        } finally {
+            unlockAndComplete();
+        }
+    }
+
+    /*
+     * Tenta a requisição sem esperar: é concedida se puder ser atendida agora, senão devolve
+     * o motivo (recursos insuficientes, reservados ou estado inseguro) e nada muda no Banqueiro.
+     */
+    public RequestResult tryRequestResources(int customerNum, int[] request){
+        lockBanker();
+
+        try {
+            log.log(EventLog.Event.REQUEST, customerNum, request);
+            RequestResult result = decide(customerNum, request);
+            if (result.mustWait()) {
+                trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.REJECTED, request);
+                log.log(EventLog.Event.TRY_REJECTED, customerNum);
+            }
+            return result;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * Passos 1 a 3 do algoritmo para uma requisição que acabou de chegar: nega as inválidas,
+     * concede se o estado continuar seguro ou devolve o motivo pelo qual ela teria que esperar
+     * (INSUFFICIENT, RESERVED ou UNSAFE). Deve ser chamado sob a trava.
+     */
+    private RequestResult decide(int customerNum, int[] request) {
+        // --- Algoritmo do Banqueiro (REQUISIÇÃO) ---
+
+        if (!state.isActive(customerNum)) {
+            metrics.deniedNotRegistered.increment();
+            trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.INVALID, request);
+            log.log(EventLog.Event.NOT_REGISTERED, customerNum);
+            return RequestResult.NOT_REGISTERED;
+        }
+
+        // Vetor malformado: não entra no registro de operações, que só guarda vetores de m valores
+        if (!state.isWellFormed(request)) {
+            metrics.deniedMalformed.increment();
+            log.log(EventLog.Event.MALFORMED, customerNum, request);
+            return RequestResult.INVALID;
+        }
+
+        // ! Passo 1: Verificar se a Request > Need (Solicitação <= Necessidade)
+        // (requisição pede por mais do que há de recursos necessários (máximo))
+        if (!state.fitsNeed(customerNum, request)) {
+            metrics.deniedExceedsNeed.increment();
+            trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.INVALID, request);
+            log.log(EventLog.Event.EXCEEDS_NEED, customerNum);
+            return RequestResult.EXCEEDS_NEED;
+        }
+
+        // ! Passo 2: Verificar se a Request > Available (Solicitação <= Disponível)
+        // (requisição pede por mais do que há de recursos disponíveis)
+        if (!state.fitsAvailable(request)) {
+            metrics.waitsInsufficient.increment();
+            return RequestResult.INSUFFICIENT;
+        }
+
+        // Caberia, mas usaria o que está sendo acumulado para uma requisição mais antiga (AGING)
+        if (!fitsUnreserved(request)) {
+            metrics.waitsReserved.increment();
+            return RequestResult.RESERVED;
+        }
+
+        // ! Passo 3: Se Request <= Available, simular a alocação e verificar se o estado é seguro
+
+        /*
+         * A atribuição é feita diretamente no estado real e a checagem de segurança roda sobre ele.
+         * Se o estado resultante for inseguro, 'tryGrant' desfaz a atribuição no próprio lugar,
+         * então nenhuma cópia das matrizes é necessária para decidir a requisição.
+         * Quando a concessão pode ser provada segura em O(m) (ver BankerState), a simulação
+         * completa nem chega a rodar.
+        */
+        if (state.tryGrant(customerNum, request)) {
+            metrics.grantsImmediate.increment();
+            trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.GRANTED, request);
+            log.log(EventLog.Event.GRANTED, customerNum, state.available);
+            return RequestResult.GRANTED;
+        }
+        metrics.waitsUnsafe.increment();
+        return RequestResult.UNSAFE;
+    }
+
+    /*
+     * Coloca a requisição que não pôde ser atendida agora na fila de espera e espera até ela ser
+     * concedida, o cliente ser removido, a thread ser interrompida ou, com 'nanos' >= 0, o prazo
+     * acabar. Em todos os casos sem concessão a requisição sai da fila e não custa mais nada nas
+     * próximas liberações. Deve ser chamado sob a trava.
+     */
+    private RequestResult awaitGrant(int customerNum, int[] request, RequestResult reason, long nanos) {
+        switch (reason) {
+            case INSUFFICIENT: log.log(EventLog.Event.INSUFFICIENT, customerNum); break;
+            case RESERVED: log.log(EventLog.Event.RESERVED, customerNum); break;
+            default: log.log(EventLog.Event.UNSAFE, customerNum); break;
+        }
+
+        // Não pôde ser atendida agora (falta de recursos ou estado inseguro): entra na fila de espera
+        trace(TraceRecorder.Type.REQUEST, customerNum,
+                reason == RequestResult.RESERVED ? TraceRecorder.Outcome.RESERVED : TraceRecorder.Outcome.WAITING, request);
+        PendingRequest pending = new PendingRequest(customerNum, request, lock.newCondition());
+        enqueue(pending);
+        completeDecided();
+
+        boolean timed = nanos >= 0;
+        while (!pending.granted && !pending.cancelled) {
+            if (timed && nanos <= 0) {
+                metrics.waitsAbandoned.increment();
+                metrics.waitsTimedOut.increment();
+                trace(TraceRecorder.Type.ABANDONED, customerNum, TraceRecorder.Outcome.WAITING, request);
+                log.log(EventLog.Event.TIMED_OUT, customerNum);
+                abandon(pending);
+                return RequestResult.TIMED_OUT;
+            }
+            try {
+                /* 
+                 * Essa parte é aonde acontece a espera pela trava, servindo como uma 'barreira'
+                 * como mencionado anteriormente.
+                 * Apenas a liberação que conceder esta requisição sinaliza esta condição, então ao
+                 * acordar a requisição já foi atendida (o laço protege contra acordar espúrio).
+                */
+                nanos = awaitWithoutHoldingTime(pending, nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Se a concessão (ou o cancelamento) aconteceu junto com a interrupção, já está decidida
+                if (pending.granted || pending.cancelled) break;
+
+                metrics.waitsAbandoned.increment();
+                trace(TraceRecorder.Type.ABANDONED, customerNum, TraceRecorder.Outcome.WAITING, request);
+                log.log(EventLog.Event.INTERRUPTED, customerNum);
+                abandon(pending);
+                return RequestResult.INTERRUPTED;
+            }
+            if (!pending.granted && !pending.cancelled && (!timed || nanos > 0)) {
+                metrics.wakeupsWithoutGrant.increment(); // acordou sem concessão: volta a esperar
+            }
+        }
+
+        if (pending.cancelled) {
+            log.log(EventLog.Event.CANCELLED, customerNum);
+            return RequestResult.CANCELLED;
+        }
+
+        log.log(EventLog.Event.GRANTED_AFTER_WAIT, customerNum, state.available);
+        return RequestResult.GRANTED;
+    }
+
+    /*
+     * Versão assíncrona de requestResources: em vez de bloquear a thread chamadora, devolve um
+     * CompletableFuture que é completado com 0 quando a requisição for concedida (na hora ou por
+     * uma liberação futura) ou com -1 se for inválida ou o cliente for removido.
+     *
+     * Enquanto espera, a requisição custa apenas uma entrada na fila do Banqueiro. Cancelar o
+     * future (ou deixá-lo expirar) a retira da fila; se a concessão e o cancelamento se cruzarem,
+     * os recursos concedidos são devolvidos automaticamente.
+     */
+    public CompletableFuture<Integer> requestResourcesAsync(int customerNum, int[] request){
+        lockBanker();
+
+        try {
+            if (state.isActive(customerNum) && !state.isWellFormed(request)) {
+                metrics.deniedMalformed.increment();
+                log.log(EventLog.Event.MALFORMED, customerNum, request);
+                return CompletableFuture.completedFuture(-1);
+            }
+            if (!state.isActive(customerNum) || !state.fitsNeed(customerNum, request)) {
+                (state.isActive(customerNum) ? metrics.deniedExceedsNeed : metrics.deniedNotRegistered).increment();
+                trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.INVALID, request);
+                log.log(EventLog.Event.INVALID_ASYNC, customerNum, request);
+                return CompletableFuture.completedFuture(-1);
+            }
+
+            // Mesmos passos 1 a 3 de requestResources; se não puder ser atendida agora, entra na mesma fila
+            boolean fits = state.fitsAvailable(request);
+            boolean unreserved = fits && fitsUnreserved(request);
+            if (unreserved && state.tryGrant(customerNum, request)) {
+                metrics.grantsImmediate.increment();
+                trace(TraceRecorder.Type.REQUEST, customerNum, TraceRecorder.Outcome.GRANTED, request);
+                return CompletableFuture.completedFuture(0);
             }
-            
-            // Lógica de loop para caso não possa ser atendido imediatamente por falta de recursos
-            // ou por resultar em estado inseguro (falha da condicional isSafe)
-            while (true) { 
-                // ! Passo 2: Verificar se a Request > Available (Solicitação <= Disponível)
-                // (requisição pede por mais do que há de recursos disponíveis)
-                boolean canGrantResources = true;
-                for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
-                    if (request[i] > available[i]) {
-                        canGrantResources = false;
-                        break;
+            (!fits ? metrics.waitsInsufficient : !unreserved ? metrics.waitsReserved : metrics.waitsUnsafe).increment();
+            trace(TraceRecorder.Type.REQUEST, customerNum,
+                    fits && !unreserved ? TraceRecorder.Outcome.RESERVED : TraceRecorder.Outcome.WAITING, request);
+
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            PendingRequest pending = new PendingRequest(customerNum, request, future);
+
+            // Cancelamento ou expiração pelo chamador: remove da fila sem esperar a próxima liberação
+            future.whenComplete((result, error) -> {
+                if (error != null) forget(pending);
+            });
+            enqueue(pending);
+            return future;
+        } finally {
+            unlockAndComplete();
+        }
+    }
+
+    // Igual a requestResourcesAsync, mas o future expira (TimeoutException) após o prazo
+    public CompletableFuture<Integer> requestResourcesAsync(int customerNum, int[] request, long timeout, TimeUnit unit){
+        return requestResourcesAsync(customerNum, request).orTimeout(timeout, unit);
+    }
+
+    private void forget(PendingRequest pending) {
+        lockBanker();
+        try {
+            if (pending.queued) {
+                metrics.waitsAbandoned.increment();
+                trace(TraceRecorder.Type.ABANDONED, pending.customer, TraceRecorder.Outcome.WAITING, pending.request);
+            }
+            abandon(pending);
+        } finally {
+            unlockAndComplete(); // abandon pode ter concedido requisições assíncronas
+        }
+    }
+
+    /*
+     * Tira da fila uma requisição que desistiu (prazo, interrupção ou cancelamento do future).
+     * Se ela era a reserva, as requisições recusadas só por causa da reserva podem caber agora,
+     * e ninguém mais reavaliaria a fila (enqueue só reavalia com uma reserva ainda na fila):
+     * então a fila é percorrida de novo aqui. Deve ser chamado sob a trava.
+     */
+    private void abandon(PendingRequest pending) {
+        waiting.remove(pending);
+        if (pending == reserved) dispatchWaiting();
+    }
+
+    public int releaseResources(int customerNum, int[] release){
+        // Adquire a trava para controle de acesso (Explicada no requestResources)
+        lockBanker();
+
+        try {
+            log.log(EventLog.Event.RELEASE, customerNum, release);
+
+            // --- Algoritmo do Banqueiro (LIBERAÇÃO) ---
+
+            if (!state.isActive(customerNum)) {
+                metrics.releasesInvalid.increment();
+                trace(TraceRecorder.Type.RELEASE, customerNum, TraceRecorder.Outcome.INVALID, release);
+                log.log(EventLog.Event.NOT_REGISTERED, customerNum);
+                return -1;
+            }
+
+            if (!state.isWellFormed(release)) {
+                metrics.releasesInvalid.increment();
+                log.log(EventLog.Event.MALFORMED, customerNum, release);
+                return -1;
+            }
+
+            // ! Passo 1: Verificar se a Release > Allocation (Liberação <= Alocação)
+            // (liberação pede por mais do que há de recursos alocados (em uso))
+            if (!state.fitsAllocation(customerNum, release)) {
+                metrics.releasesInvalid.increment();
+                trace(TraceRecorder.Type.RELEASE, customerNum, TraceRecorder.Outcome.INVALID, release);
+                log.log(EventLog.Event.EXCEEDS_ALLOCATION, customerNum);
+                return -1; 
+            }
+
+            // ! Passo 2: Aplicar a liberação (atualizar available, allocation, need)
+            state.release(customerNum, release);
+            metrics.releases.increment();
+            trace(TraceRecorder.Type.RELEASE, customerNum, TraceRecorder.Outcome.GRANTED, release);
+
+            log.log(EventLog.Event.RELEASED, customerNum, state.available);
+
+            dispatchWaiting();
+            return 0;
+        } finally {
+            unlockAndComplete(); // Destrava mesmo que hajam erros, assim a próxima requisição sempre vai rodar
+        }
+    }
+
+    /*
+     * Processa um lote de liberações e requisições sob uma única aquisição da trava.
+     *
+     * Primeiro todas as liberações são aplicadas (e as requisições que já estavam esperando
+     * são atendidas, como em releaseResources). Depois as requisições do lote são admitidas
+     * na ordem em que foram passadas: todas as que cabem no disponível são concedidas de uma
+     * vez e uma única checagem de segurança valida o conjunto. Só se esse conjunto for inseguro
+     * a concessão é desfeita e as requisições passam a ser testadas uma a uma, na mesma ordem.
+     *
+     * Requisições do lote nunca esperam. O resultado tem uma posição por item, primeiro as
+     * liberações e depois as requisições:
+     *   0  -> liberação aplicada / requisição concedida;
+     *  -1  -> item inválido (cliente não registrado, vetor malformado, excede alocação ou necessidade);
+     *  -2  -> requisição não admitida agora (recursos insuficientes ou reservados, ou estado inseguro).
+     *
+     * Lança IllegalArgumentException se a quantidade de clientes e de vetores não bater.
+     */
+    public int[] processBatch(int[] releaseCustomers, int[][] releases, int[] requestCustomers, int[][] requests){
+        if (releaseCustomers.length != releases.length || requestCustomers.length != requests.length) {
+            throw new IllegalArgumentException("Cada cliente do lote precisa de exatamente um vetor.");
+        }
+        int[] results = new int[releaseCustomers.length + requestCustomers.length];
+
+        lockBanker();
+
+        try {
+            // --- Liberações ---
+            boolean released = false;
+            for (int k = 0; k < releaseCustomers.length; k++) {
+                int customerNum = releaseCustomers[k];
+                if (!state.isActive(customerNum) || !state.fitsAllocation(customerNum, releases[k])) {
+                    metrics.releasesInvalid.increment();
+                    if (state.isWellFormed(releases[k])) {
+                        trace(TraceRecorder.Type.RELEASE, customerNum, TraceRecorder.Outcome.INVALID, releases[k]);
                     }
+                    results[k] = -1;
+                    continue;
                 }
+                state.release(customerNum, releases[k]);
+                metrics.releases.increment();
+                trace(TraceRecorder.Type.RELEASE, customerNum, TraceRecorder.Outcome.GRANTED, releases[k]);
+                released = true;
+            }
+            if (released) dispatchWaiting();
 
-                // Se os recursos não estiverem disponíveis, 
-                // ativa a condição de espera para esse cliente pelos recursos requisitados
-                if (!canGrantResources) {
-                    System.out.println("Cliente " + customerNum + ": Recursos insuficientes disponíveis. Esperando...");
-                    try {
-                        /* 
-                         * Essa parte é aonde acontece a espera pela trava, servindo como uma 'barreira'
-                         * como mencionado anteriormente.
-                         * Após receber um sinal de liberação (signalAll), acorda e entra em uma corrida contra outras
-                         * instâncias para competir pela 'ownership' dessa trava.
-                         
-                         * Se houver sucesso na corrida, após o 'unlock()', essa instância se tornará a qual
-                         * vai continuar a rodar seus comandos a partir deste ponto.
-                        */
-                        resourcesAvailable.await();
-                    } catch (InterruptedException e) {
-                        System.out.println("Cliente " + customerNum + " interrompido enquanto esperava.");
-                        Thread.currentThread().interrupt();
-                        return -1; 
-                    }
-                    // Caso tenha ganhado a corrida, isso não quer dizer que os recursos foram propriamente liberados
-                    // (o destravamento da lock pode ter sido por conta de outra requisição de recursos)
-                    continue; // Então volta do inicio para realmente validar se há recursos disponíveis.
+            // --- Requisições ---
+            int offset = releaseCustomers.length;
+
+            // Concede (temporariamente) todas as requisições válidas que cabem no disponível
+            boolean anyGranted = false;
+            for (int k = 0; k < requestCustomers.length; k++) {
+                int customerNum = requestCustomers[k];
+                if (!state.isActive(customerNum) || !state.fitsNeed(customerNum, requests[k])) {
+                    (!state.isActive(customerNum) ? metrics.deniedNotRegistered
+                            : state.isWellFormed(requests[k]) ? metrics.deniedExceedsNeed : metrics.deniedMalformed).increment();
+                    results[offset + k] = -1;
+                } else if (!fitsUnreserved(requests[k])) {
+                    results[offset + k] = -2;
+                } else {
+                    state.grant(customerNum, requests[k]);
+                    anyGranted = true;
                 }
+            }
 
-                // ! Passo 3: Se Request <= Available, simular a alocação e verificar se o estado é seguro
-
-                // Cópias temporárias para simulação de se está seguro fazer a atribuição
-                int[] tempAvailable = Arrays.copyOf(available, Constants.NUMBER_OF_RESOURCES);
-
-                int[][] tempAllocation = new int[Constants.NUMBER_OF_CUSTOMERS][Constants.NUMBER_OF_RESOURCES];
-                for(int i=0; i < Constants.NUMBER_OF_CUSTOMERS; i++) 
-                    tempAllocation[i] = Arrays.copyOf(allocation[i], Constants.NUMBER_OF_RESOURCES);
-
-                int[][] tempNeed = new int[Constants.NUMBER_OF_CUSTOMERS][Constants.NUMBER_OF_RESOURCES];
-                for(int i=0; i < Constants.NUMBER_OF_CUSTOMERS; i++) 
-                    tempNeed[i] = Arrays.copyOf(need[i], Constants.NUMBER_OF_RESOURCES);
-
-                // Simular a atribuição temporária
-                for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
-                    /* (Temporária, mas se aplica para a final)
-                     * Lógica de Alocação:
-                     * - Os recursos requisitados são "retirados" do disponível;
-                     * - Os recursos requisitados são "adicionados" à alocação do cliente (em uso);
-                     * - A necessidade restante do cliente é "reduzida".
-                    */
-                    tempAvailable[i] -= request[i];
-                    tempAllocation[customerNum][i] += request[i];
-                    tempNeed[customerNum][i] -= request[i];
+            // Uma única checagem de segurança para o lote inteiro
+            if (anyGranted && !state.isSafe()) {
+                // Inseguro: desfaz tudo (na ordem inversa) e admite uma a uma, na ordem do chamador.
+                // As recusadas (-2) também são refeitas: podem ter sido recusadas só porque as
+                // anteriores do lote, agora desfeitas, tinham usado o disponível
+                for (int k = requestCustomers.length - 1; k >= 0; k--) {
+                    if (results[offset + k] == 0) state.release(requestCustomers[k], requests[k]);
+                }
+                for (int k = 0; k < requestCustomers.length; k++) {
+                    if (results[offset + k] == -1) continue;
+                    boolean granted = fitsUnreserved(requests[k]) && state.tryGrant(requestCustomers[k], requests[k]);
+                    results[offset + k] = granted ? 0 : -2;
                 }
+            }
 
-                // Fazemos o teste de segurança com os dados simulados pois não destruiremos a lógica principal
-                if (isSafe(tempAvailable, tempAllocation, tempNeed)){
-                    // Pemitir a requisição do cliente se realmente for seguro (aplicar as mudanças ao estado real)
-                    available = tempAvailable;
-                    allocation = tempAllocation;
-                    need = tempNeed;
-
-                    System.out.println("Cliente " + customerNum + ": Requisição concedida. Agora disponíveis: " + Arrays.toString(available));
-                    return 0;
-                } 
-                else {
-                    System.out.println("Cliente " + customerNum + ": Requisição negada (levaria a estado inseguro). Esperando...");
-                    try {
-                        // Novamente entra em estado de espera para a possível liberação de novos recursos  
-                        resourcesAvailable.await();
-                    } catch (InterruptedException e) {
-                        System.out.println("Cliente " + customerNum + " interrompido enquanto esperava (estado inseguro).");
-                        Thread.currentThread().interrupt();
-                        return -1;
-                    }
-                    // Após receber a trava (acordar), o loop while fará a thread verificar a requisição novamente
+            for (int k = 0; k < requestCustomers.length; k++) {
+                if (results[offset + k] == 0) metrics.grantsImmediate.increment();
+                if (trace != null && state.isWellFormed(requests[k])) {
+                    int result = results[offset + k];
+                    trace(TraceRecorder.Type.REQUEST, requestCustomers[k], result == 0 ? TraceRecorder.Outcome.GRANTED
+                            : result == -1 ? TraceRecorder.Outcome.INVALID : TraceRecorder.Outcome.REJECTED, requests[k]);
                 }
             }
+            log.log(EventLog.Event.BATCH, releaseCustomers.length, requestCustomers.length, state.available);
+            return results;
         } finally {
-            lock.unlock(); // Destrava mesmo que hajam erros, assim a próxima requisição sempre vai rodar
-        }
-    }
-
-    private boolean isSafe(int[] currentAvailable, int[][] currentAllocation, int[][] currentNeed){
-        // --- Algoritmo do Banqueiro (REQUISIÇÃO: Checagem de Segurança) ---
-
-        // ! Passo 1: Trabalho = Disponível e Término[i] = false
-        int[] work = Arrays.copyOf(currentAvailable, Constants.NUMBER_OF_RESOURCES);
-        boolean[] finish = new boolean[Constants.NUMBER_OF_CUSTOMERS];
-        for(int i=0; i < Constants.NUMBER_OF_CUSTOMERS; i++)
-            finish[i] = false;
-
-        boolean validationFinished;
-        do {
-            validationFinished = false; // A ser explicado no final quando seu valor é alterado
-
-            // ! Passo 2: Término[i] == false E Necessidade[i] <= Trabalho
-            for(int i=0; i < Constants.NUMBER_OF_CUSTOMERS; i++){
-    
-                // Término[i] == false
-                // ou seja, todos que já tiverem sido validados (true) não precisam ser validados novamente
-                if (!finish[i]){
-    
-                    // Verifica se Necessidade[i] <= Trabalho para todas posições de Necessidade
-                    boolean validateWork = true;
-                    for (int j = 0; j < Constants.NUMBER_OF_RESOURCES; j++) {
-                        /*
-                         * A Necessidade acaba sendo maior que o Trabalho disponível,
-                         * logo não seria possível validar seu pedido.
-                        */
-                        if (currentNeed[i][j] > work[j]) {
-                            validateWork = false;
-                            break; // Se falhar em uma, todo trabalho posterior ou anterior ficaria inválido da mesma forma
-                        }
-                    }
-    
-                    // Necessidade[i] <= Trabalho
-                    if (validateWork){
-                        // ! Passo 3: Trabalho = Trabalho + Alocação e Término[i] = true
-    
-                        /*
-                         * Essa parte seria uma simulação de liberação de recursos pelo cliente,
-                         * logo a soma de Trabalho com Alocação resultaria na devolução dos recursos
-                         * previamente tomados pelo requerente (cliente).
-                        */
-                        for (int j=0; j < Constants.NUMBER_OF_RESOURCES; j++){
-                            work[j] += currentAllocation[i][j];
-                        }
-                        finish[i] = true; // Término[i] = true
-
-                        /*
-                         * Após um cliente[i] liberar seus recursos, isso possibilita que a lógica de
-                         * segurança seja rodada novamente (Retornar ao Passo 2).
-                         * Isso impõe que, agora com mais Trabalho disponível, outro cliente[i] possa
-                         * usufruir propriamente do Trabalho e validar se suas transações (Necessidade <= Trabalho)
-                         * sejam realmente válidas.
-                        
-                         * Essa "re-validação" acontece dentro do loop do-while pois necessitamos validar
-                         * para os cliente[i] que são anteriores a este, logo precisando rodar
-                         * toda lógica novamente (a partir do primeiro cliente[i]).
-                        */
-                        validationFinished = true;
-                    }
+            unlockAndComplete();
+        }
+    }
+
+    /*
+     * Percorre a fila de espera na ordem da política (ver AdmissionPolicy) e concede, em nome da
+     * thread que espera, cada requisição que agora cabe no disponível e mantém o estado seguro.
+     * Só a thread da requisição concedida é acordada; requisições que ainda não cabem no
+     * disponível custam uma comparação O(m) e nem chegam a rodar a checagem de segurança.
+     * Fora da FIFO a fila é copiada e ordenada a cada chamada (O(w log w) para w esperando).
+     * Deve ser chamado sob a trava.
+    */
+    private void dispatchWaiting() {
+        if (reserved != null) {
+            trace(TraceRecorder.Type.UNRESERVED, reserved.customer, TraceRecorder.Outcome.GRANTED, null);
+            reserved = null;
+        }
+        if (policy == AdmissionPolicy.FIFO) {
+            PendingRequest pending = waiting.first();
+            while (pending != null) {
+                PendingRequest next = pending.next;
+                admit(pending);
+                pending = next;
+            }
+            return;
+        }
+
+        // Copia a fila em ordem de chegada e ordena pela política; a ordenação é estável, então
+        // empates continuam em ordem de chegada
+        int count = waiting.size();
+        if (order.length < count) order = new PendingRequest[Math.max(count, 2 * order.length)];
+        long now = System.nanoTime();
+        int k = 0;
+        for (PendingRequest pending = waiting.first(); pending != null; pending = pending.next) {
+            pending.rank = policy.rank(pending, now, agingNanos);
+            order[k++] = pending;
+        }
+        Arrays.sort(order, 0, count, BY_RANK);
+
+        for (k = 0; k < count; k++) {
+            PendingRequest pending = order[k];
+            order[k] = null;
+            if (admit(pending) || reserved != null || policy != AdmissionPolicy.AGING) continue;
+
+            // AGING: a primeira da ordem que já esperou o bastante e não cabe no disponível
+            // passa a acumular o que for devolvido; as seguintes só usam o que sobrar além dela
+            if (now - pending.enqueuedAt >= agingNanos && !state.fitsAvailable(pending.request) && canReserve(pending)) {
+                reserved = pending;
+                trace(TraceRecorder.Type.RESERVED, pending.customer, TraceRecorder.Outcome.GRANTED, pending.request);
+                if (!pending.reserving) {
+                    pending.reserving = true;
+                    metrics.reservations.increment();
                 }
             }
-        } while (validationFinished);
+        }
+    }
 
-        // ! Passo 4: Término[i] == true para todo i, sistema é seguro
-        int counter = 0;
-        for (int i=0; i < finish.length; i++){
-            if (finish[i]) counter++; // Se todos os casos de Término[i] retornar verdadeiro
+    /*
+     * Concede a requisição pendente se ela couber no disponível (sem usar o que está reservado)
+     * e mantiver o estado seguro; requisições assíncronas já canceladas ou expiradas apenas saem
+     * da fila. Devolve se a requisição saiu da fila.
+     */
+    private boolean admit(PendingRequest pending) {
+        if (pending.isAsync() && pending.future.isDone()) {
+            // Cancelada ou expirada pelo chamador: apenas sai da fila
+            metrics.waitsAbandoned.increment();
+            trace(TraceRecorder.Type.ABANDONED, pending.customer, TraceRecorder.Outcome.WAITING, pending.request);
+            waiting.remove(pending);
+            return true;
         }
-        if (counter == finish.length) return true;
+        if (!fitsUnreserved(pending.request) || !state.tryGrant(pending.customer, pending.request)) return false;
 
-        return false;
+        waiting.remove(pending);
+        pending.granted = true;
+        metrics.grantsAfterWait.increment();
+        trace(TraceRecorder.Type.GRANTED_AFTER_WAIT, pending.customer, TraceRecorder.Outcome.GRANTED, pending.request);
+        long waited = System.nanoTime() - pending.enqueuedAt;
+        metrics.waitTime.record(waited);
+        metrics.waitTimeByPriority(pending.priority).record(waited);
+        wake(pending);
+        return true;
     }
 
-    public int releaseResources(int customerNum, int[] release){
-        // Adquire a trava para controle de acesso (Explicada no requestResources)
+    // Coloca a requisição na fila com a classe atual do cliente. Com uma reserva ativa a fila é
+    // reavaliada, porque quem passa a esperar deixa de contar como alguém que vai devolver
+    // recursos (ver canReserve) e a reserva pode deixar de valer.
+    private void enqueue(PendingRequest pending) {
+        pending.priority = priorityOf(pending.customer);
+        waiting.add(pending);
+        if (reserved != null && reserved.queued) dispatchWaiting();
+    }
+
+    // Completa os futures decididos até aqui (destravando e travando de novo) antes de esperar
+    private void completeDecided() {
+        if (decidedAsync == null) return;
+        unlockAndComplete();
+        lockBanker();
+    }
+
+    // Cabe no disponível sem usar o que está reservado para uma requisição mais antiga
+    private boolean fitsUnreserved(int[] request) {
+        if (!state.fitsAvailable(request)) return false;
+        int[] reservation = reserved != null && reserved.queued ? reserved.request : replayedReservation;
+        if (reservation == null) return true;
+        int[] available = state.available;
+        for (int j = 0; j < state.resources; j++) {
+            if (request[j] > 0 && request[j] > available[j] - reservation[j]) return false;
+        }
+        return true;
+    }
+
+    // Aplica uma reserva gravada no trace (null a desfaz); só para o TraceReplay
+    void setReplayedReservation(int[] request){
+        lockBanker();
+        try {
+            replayedReservation = request;
+        } finally {
+            unlockBanker();
+        }
+    }
+
+    /*
+     * A reserva só é criada se o que a requisição pede pode voltar ao disponível sem depender de
+     * quem está esperando: o total menos o que está alocado a clientes com requisições na fila
+     * (que não devolvem nada enquanto esperam). Um cliente com mais de uma requisição na fila é
+     * descontado mais de uma vez, o que só torna o teste mais conservador. Como toda entrada na
+     * fila reavalia a reserva (ver enqueue), ela é desfeita assim que passaria a depender da fila.
+     */
+    private boolean canReserve(PendingRequest candidate) {
+        int resources = state.resources;
+        if (reachable == null) reachable = new int[resources];
+        System.arraycopy(state.total, 0, reachable, 0, resources);
+        int[] allocation = state.allocation;
+        for (PendingRequest pending = waiting.first(); pending != null; pending = pending.next) {
+            int row = pending.customer * resources;
+            for (int j = 0; j < resources; j++) reachable[j] -= allocation[row + j];
+        }
+        for (int j = 0; j < resources; j++) {
+            if (candidate.request[j] > reachable[j]) return false;
+        }
+        return true;
+    }
+
+    private void trace(TraceRecorder.Type type, int customerNum, TraceRecorder.Outcome outcome, int[] vector) {
+        if (trace != null) trace.record(type, customerNum, outcome, vector);
+    }
+
+    // Adquire a trava e marca o início do tempo segurando-a
+    private void lockBanker() {
         lock.lock();
+        if (lock.getHoldCount() == 1) lockAcquiredAt = System.nanoTime();
+    }
+
+    // Publica as linhas alteradas para os leitores, registra o tempo segurando a trava e destrava
+    private void unlockBanker() {
+        if (lock.getHoldCount() == 1) {
+            state.publish();
+            metrics.lockHoldTime.record(System.nanoTime() - lockAcquiredAt);
+        }
+        lock.unlock();
+    }
 
+    // Espera na condição da requisição sem contar o tempo de espera como tempo segurando a trava.
+    // Com 'nanos' negativo espera sem prazo; senão devolve quanto resta do prazo (ver awaitNanos).
+    private long awaitWithoutHoldingTime(PendingRequest pending, long nanos) throws InterruptedException {
+        state.publish(); // await solta a trava: o que foi alterado até aqui já fica visível
+        metrics.lockHoldTime.record(System.nanoTime() - lockAcquiredAt);
         try {
-            System.out.println("Cliente " + customerNum + " liberando: " + Arrays.toString(release));
+            if (nanos < 0) {
+                pending.condition.await();
+                return nanos;
+            }
+            return pending.condition.awaitNanos(nanos);
+        } finally {
+            lockAcquiredAt = System.nanoTime();
+        }
+    }
 
-            // --- Algoritmo do Banqueiro (LIBERAÇÃO) ---
+    // Acorda a thread da requisição ou, se for assíncrona, agenda seu término para depois do unlock
+    private void wake(PendingRequest pending) {
+        if (pending.isAsync()) {
+            pending.next = decidedAsync;
+            decidedAsync = pending;
+        } else {
+            pending.condition.signal();
+        }
+    }
 
-            // ! Passo 1: Verificar se a Release > Allocation (Liberação <= Alocação)
-            // (liberação pede por mais do que há de recursos alocados (em uso))
-            for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
-                if (release[i] > allocation[customerNum][i]) {
-                    System.out.println("Cliente " + customerNum + ": Erro! Tentando liberar mais recursos do que alocado.");
-                    return -1; 
-                }
+    /*
+     * Destrava e só então completa os futures decididos sob a trava, assim os callbacks
+     * encadeados pelo chamador nunca rodam segurando a trava do Banqueiro.
+     */
+    private void unlockAndComplete() {
+        PendingRequest pending = decidedAsync;
+        decidedAsync = null;
+        unlockBanker();
+
+        while (pending != null) {
+            PendingRequest next = pending.next;
+            pending.next = null;
+            if (pending.cancelled) {
+                pending.future.complete(-1);
+            } else if (!pending.future.complete(0)) {
+                // O future expirou ou foi cancelado depois de concedido: devolve os recursos
+                returnAbandonedGrant(pending);
             }
+            pending = next;
+        }
+    }
 
-            // ! Passo 2: Aplicar a liberação (atualizar available, allocation, need)
-            for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
-                /*
-                    * Lógica de Liberação:
-                    * - Os recursos liberados são "adicionados" ao disponível;
-                    * - Os recursos liberados são "retirados" da alocação do cliente (não mais em uso);
-                    * - A necessidade restante do cliente é "aumentada".
-                */
-                available[i] += release[i];
-                allocation[customerNum][i] -= release[i];
-                need[customerNum][i] += release[i];
+    private void returnAbandonedGrant(PendingRequest pending) {
+        lockBanker();
+        try {
+            if (state.isActive(pending.customer) && state.fitsAllocation(pending.customer, pending.request)) {
+                state.release(pending.customer, pending.request);
+                trace(TraceRecorder.Type.RELEASE, pending.customer, TraceRecorder.Outcome.GRANTED, pending.request);
+                dispatchWaiting();
             }
+        } finally {
+            unlockAndComplete();
+        }
+    }
 
-            System.out.println("Cliente " + customerNum + ": Recursos liberados. Agora disponíveis: " + Arrays.toString(available));
+    /*
+     * Aposenta o Banqueiro: cancela todas as requisições que estão esperando (elas terminam com
+     * -1, como na remoção do cliente) e remove todos os clientes, de uma vez sob a trava.
+     * Devolve o estado imediatamente anterior à remoção; operações que chegarem depois recebem
+     * -1 (cliente não registrado), então nada do que acontece depois se perde. Usado ao fundir
+     * componentes de um PartitionedBanker.
+     */
+    public BankerSnapshot retire(){
+        lockBanker();
+        try {
+            PendingRequest pending = waiting.first();
+            while (pending != null) {
+                PendingRequest next = pending.next;
+                waiting.remove(pending);
+                pending.cancelled = true;
+                metrics.waitsAbandoned.increment();
+                trace(TraceRecorder.Type.ABANDONED, pending.customer, TraceRecorder.Outcome.WAITING, pending.request);
+                wake(pending);
+                pending = next;
+            }
+            if (reserved != null) {
+                trace(TraceRecorder.Type.UNRESERVED, reserved.customer, TraceRecorder.Outcome.GRANTED, null);
+                reserved = null;
+            }
 
-            /*
-             * Aqui notificamos todas as threads esperando na condição de lock() ou de await()
-             * para acordarem e esperar na fila de liberação da lock.
-             * Assim, a instância que ganhar a corrida pela lock (primeiro da fila), irá assumir 
-             * suas atividades enquanto as outras permanecerão em um estado ocioso por 
-             * outra oportunidade de liberação. 
-            */
-            resourcesAvailable.signalAll();
-            return 0;
+            state.publish(); // o estado final, já sem concessões temporárias
+            BankerSnapshot last = state.snapshot();
+            for (int slot = 0; slot < state.customers; slot++) {
+                if (!state.isActive(slot)) continue;
+                state.deregister(slot);
+                trace(TraceRecorder.Type.DEREGISTER, slot, TraceRecorder.Outcome.GRANTED, null);
+            }
+            return last;
         } finally {
-            lock.unlock(); // Destrava mesmo que hajam erros, assim a próxima requisição sempre vai rodar
+            unlockAndComplete();
         }
     }
 
+    /*
+     * Consultas sem a trava: leem as linhas imutáveis publicadas ao fim de cada operação
+     * (ver BankerState.publish), então nunca esperam por quem está requisitando ou liberando
+     * e nunca devolvem um estado intermediário (por exemplo uma concessão temporária).
+     */
+    public BankerSnapshot snapshot(){
+        return state.snapshot();
+    }
+
+    public int[] getAvailable(){
+        return state.publishedAvailable();
+    }
+
     public int getNeedValue(int customerNum, int valuePos){
-        return this.need[customerNum][valuePos];
+        BankerSnapshot.Row row = state.publishedRow(customerNum);
+        return row == null ? 0 : row.need[valuePos];
     }
 
     public int[] getAllocationRow(int customerNum){
-        return this.allocation[customerNum];
+        BankerSnapshot.Row row = state.publishedRow(customerNum);
+        return row == null ? new int[state.resources] : Arrays.copyOf(row.allocation, state.resources);
     }
 }
@@ -0,0 +1,320 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * Benchmark dos caminhos críticos do Banqueiro.
+ *
+ * Cenários medidos para cada combinação de parâmetros:
+ *  - isSafe:  só a checagem de segurança sobre um estado já populado;
+ *  - decide:  decisão de uma requisição (concessão temporária + checagem + desfazer),
+ *             com uma fração configurável de requisições que levariam a estado inseguro;
+ *  - request/release: requestResources seguido de releaseResources, por N threads ao mesmo
+ *             tempo (contenção), cada uma com seu próprio cliente.
+ *
+ * Para cada cenário são impressos vazão, percentis de latência e bytes alocados por operação.
+ *
+ * Uso: java BankerBenchmark [--customers=1000,10000] [--resources=3,32] [--threads=1,4]
+ *                           [--unsafe=0,0.5] [--engine=classic,worklist] [--warmup=2] [--seconds=5]
+ */
+public class BankerBenchmark {
+    // Quantidade máxima de amostras de latência guardadas por thread
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private static final PrintStream out = System.out;
+
+    public static void main(String[] args) throws Exception {
+        int[] customers = {1000};
+        int[] resources = {3};
+        int[] threads = {1};
+        double[] unsafe = {0.0};
+        String[] engines = {"classic", "worklist"};
+        int warmup = 2;
+        int seconds = 5;
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "customers": customers = parseInts(value); break;
+                case "resources": resources = parseInts(value); break;
+                case "threads": threads = parseInts(value); break;
+                case "unsafe": unsafe = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray(); break;
+                case "engine": engines = value.split(","); break;
+                case "warmup": warmup = Integer.parseInt(value); break;
+                case "seconds": seconds = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + arg);
+            }
+        }
+
+        // O Banqueiro imprime cada operação; durante a medição a saída é descartada
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        out.printf("%-16s %-9s %8s %5s %7s %6s %14s %10s %10s %10s %12s%n",
+                "cenario", "engine", "clientes", "rec", "threads", "unsafe", "ops/s", "p50(us)", "p99(us)", "p99.9(us)", "bytes/op");
+
+        for (String engine : engines) {
+            for (int n : customers) {
+                for (int m : resources) {
+                    report("isSafe", engine, n, m, 1, 0, measureIsSafe(engine, n, m, warmup, seconds));
+                    for (double fraction : unsafe) {
+                        report("decide", engine, n, m, 1, fraction, measureDecide(engine, n, m, fraction, warmup, seconds));
+                    }
+                    for (int t : threads) {
+                        report("request/release", engine, n, m, t, 0, measureRequestRelease(engine, n, m, t, warmup, seconds));
+                    }
+                }
+            }
+        }
+    }
+
+    // --- Cenários ---
+
+    private static Result measureIsSafe(String engine, int customers, int resources, int warmup, int seconds) {
+        BankerState state = populate(engine, customers, resources, 0, new Random(42));
+        Recorder recorder = new Recorder();
+        run(warmup, seconds, recorder, () -> state.isSafe());
+        return recorder.result();
+    }
+
+    private static Result measureDecide(String engine, int customers, int resources, double unsafeFraction, int warmup, int seconds) {
+        Random random = new Random(42);
+        BankerState state = populate(engine, customers, resources, 0, random);
+
+        // Separa requisições candidatas em seguras e inseguras para o estado populado
+        List<int[]> safe = new ArrayList<>();
+        List<int[]> unsafe = new ArrayList<>();
+        for (int attempt = 0; attempt < 200_000 && (safe.size() < 512 || unsafe.size() < 512); attempt++) {
+            int customer = random.nextInt(customers);
+            int[] request = randomRequest(state, customer, 0, random);
+            if (request == null) continue;
+            if (state.tryGrant(customer, request)) {
+                state.release(customer, request);
+                if (safe.size() < 512) safe.add(withCustomer(customer, request));
+            } else if (unsafe.size() < 512) {
+                unsafe.add(withCustomer(customer, request));
+            }
+        }
+        if (safe.isEmpty() && unsafe.isEmpty()) return Result.EMPTY;
+
+        // Monta a mistura com a fração de inseguras pedida (limitada ao que foi encontrado)
+        int[][] mix = new int[1024][];
+        for (int k = 0; k < mix.length; k++) {
+            boolean pickUnsafe = !unsafe.isEmpty() && (safe.isEmpty() || random.nextDouble() < unsafeFraction);
+            List<int[]> source = pickUnsafe ? unsafe : safe;
+            mix[k] = source.get(random.nextInt(source.size()));
+        }
+
+        int[] cursor = {0};
+        Recorder recorder = new Recorder();
+        run(warmup, seconds, recorder, () -> {
+            int[] entry = mix[cursor[0]++ & (mix.length - 1)];
+            int customer = entry[resources];
+            if (state.tryGrant(customer, entry)) state.release(customer, entry);
+        });
+        return recorder.result();
+    }
+
+    private static Result measureRequestRelease(String engine, int customers, int resources, int threads, int warmup, int seconds)
+            throws InterruptedException {
+        // Reproduz no Banqueiro os clientes e alocações de um estado montado (um único lote seguro)
+        BankerState template = populate(engine, customers, resources, threads, new Random(42));
+        Banker banker = new Banker(template.total, customers, safetyCheck(engine));
+        int[] ids = new int[customers];
+        int[][] allocations = new int[customers][];
+        for (int i = 0; i < customers; i++) {
+            ids[i] = banker.registerCustomer(template.row(template.maximum, i));
+            allocations[i] = template.row(template.allocation, i);
+        }
+        banker.processBatch(new int[0], new int[0][], ids, allocations);
+
+        // Cada thread pede e devolve uma unidade de cada recurso do seu cliente reservado
+        int[] unit = new int[resources];
+        Arrays.fill(unit, 1);
+
+        Recorder[] recorders = new Recorder[threads];
+        Thread[] workers = new Thread[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Recorder recorder = recorders[t] = new Recorder();
+            int customer = ids[customers - threads + t];
+            workers[t] = new Thread(() -> {
+                run(warmup, seconds, recorder, () -> {
+                    banker.requestResources(customer, unit);
+                    banker.releaseResources(customer, unit);
+                });
+                done.countDown();
+            });
+            workers[t].start();
+        }
+        done.await();
+        return Result.merge(recorders);
+    }
+
+    // --- Montagem do estado ---
+
+    static SafetyCheck safetyCheck(String engine) {
+        switch (engine) {
+            case "classic": return new ClassicSafetyCheck();
+            case "worklist": return new WorklistSafetyCheck();
+            case "parallel": return new ParallelSafetyCheck(new ClassicSafetyCheck(), 0);
+            case "adaptive": return new ParallelSafetyCheck(new ClassicSafetyCheck());
+            default: throw new IllegalArgumentException("Engine desconhecida: " + engine);
+        }
+    }
+
+    /*
+     * Cria um estado com 'customers' clientes e alocações aleatórias, mantendo-o seguro.
+     * Os últimos 'reserved' clientes têm demanda máxima de uma unidade de cada recurso e nada
+     * alocado, e 'reserved' unidades de cada recurso nunca são concedidas aos demais, então os
+     * reservados sempre cabem no disponível ao mesmo tempo e nunca esperam.
+     */
+    private static BankerState populate(String engine, int customers, int resources, int reserved, Random random) {
+        int[] total = new int[resources];
+        for (int j = 0; j < resources; j++) total[j] = customers + reserved;
+        BankerState state = new BankerState(total, customers, safetyCheck(engine));
+
+        int[] maxNeed = new int[resources];
+        for (int i = 0; i < customers; i++) {
+            if (i >= customers - reserved) {
+                Arrays.fill(maxNeed, 1);
+            } else {
+                for (int j = 0; j < resources; j++) maxNeed[j] = random.nextInt(total[j] / 4 + 1);
+            }
+            state.register(maxNeed);
+        }
+
+        // Concede metade do disponível (aproximadamente) em requisições aleatórias seguras
+        int target = customers / 2;
+        for (int attempt = 0; attempt < customers * 4 && target > 0; attempt++) {
+            int customer = random.nextInt(Math.max(1, customers - reserved));
+            int[] request = randomRequest(state, customer, reserved, random);
+            if (request != null && state.tryGrant(customer, request)) target--;
+        }
+        return state;
+    }
+
+    // Requisição aleatória que respeita a necessidade do cliente e o disponível menos a folga (null se vazia)
+    private static int[] randomRequest(BankerState state, int customer, int headroom, Random random) {
+        int[] request = new int[state.resources];
+        boolean any = false;
+        for (int j = 0; j < state.resources; j++) {
+            int limit = Math.min(state.need[customer * state.resources + j], state.available[j] - headroom);
+            request[j] = limit > 0 ? random.nextInt(limit + 1) : 0;
+            any |= request[j] > 0;
+        }
+        return any ? request : null;
+    }
+
+    private static int[] withCustomer(int customer, int[] request) {
+        int[] entry = Arrays.copyOf(request, request.length + 1);
+        entry[request.length] = customer;
+        return entry;
+    }
+
+    // --- Medição ---
+
+    private static void run(int warmupSeconds, int seconds, Recorder recorder, Runnable operation) {
+        long warmupEnd = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        while (System.nanoTime() < warmupEnd) operation.run();
+
+        recorder.start();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long now = System.nanoTime();
+        while (now < end) {
+            operation.run();
+            long after = System.nanoTime();
+            recorder.record(after - now);
+            now = after;
+        }
+        recorder.stop();
+    }
+
+    private static void report(String scenario, String engine, int customers, int resources, int threads, double unsafe, Result result) {
+        out.printf("%-16s %-9s %8d %5d %7d %6.2f %14.0f %10.2f %10.2f %10.2f %12.1f%n",
+                scenario, engine, customers, resources, threads, unsafe,
+                result.opsPerSecond, result.p50 / 1e3, result.p99 / 1e3, result.p999 / 1e3, result.bytesPerOp);
+    }
+
+    private static int[] parseInts(String value) {
+        return Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Amostras de latência e bytes alocados de uma thread
+    private static class Recorder {
+        private final long[] samples = new long[MAX_SAMPLES];
+        private long operations;
+        private int count;
+        private long startNanos, elapsedNanos;
+        private long startBytes, allocatedBytes;
+
+        void start() {
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void record(long nanos) {
+            operations++;
+            if (count < samples.length) samples[count++] = nanos;
+        }
+
+        void stop() {
+            elapsedNanos = System.nanoTime() - startNanos;
+            allocatedBytes = allocatedBytes() - startBytes;
+        }
+
+        Result result() {
+            return Result.merge(new Recorder[] {this});
+        }
+
+        private static long allocatedBytes() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+            }
+            return 0;
+        }
+    }
+
+    private static class Result {
+        static final Result EMPTY = new Result();
+
+        double opsPerSecond, p50, p99, p999, bytesPerOp;
+
+        static Result merge(Recorder[] recorders) {
+            Result result = new Result();
+            long operations = 0, bytes = 0;
+            int samples = 0;
+            for (Recorder recorder : recorders) {
+                operations += recorder.operations;
+                bytes += recorder.allocatedBytes;
+                samples += recorder.count;
+                result.opsPerSecond += recorder.operations / (recorder.elapsedNanos / 1e9);
+            }
+            if (operations == 0) return EMPTY;
+
+            long[] all = new long[samples];
+            int position = 0;
+            for (Recorder recorder : recorders) {
+                System.arraycopy(recorder.samples, 0, all, position, recorder.count);
+                position += recorder.count;
+            }
+            Arrays.sort(all);
+            result.p50 = percentile(all, 0.50);
+            result.p99 = percentile(all, 0.99);
+            result.p999 = percentile(all, 0.999);
+            result.bytesPerOp = (double) bytes / operations;
+            return result;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            return sorted[Math.min(sorted.length - 1, (int) (quantile * sorted.length))];
+        }
+    }
+}
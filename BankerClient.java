@@ -0,0 +1,157 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Cliente do BankerServer (ver BankerProtocol), com a mesma forma da API do Banqueiro.
+ *
+ * Todas as operações são assíncronas e podem ser chamadas de qualquer thread: cada uma envia
+ * um quadro com um id novo e devolve um CompletableFuture que a thread de leitura completa
+ * quando chega a resposta com aquele id. Como nada espera a resposta para enviar o próximo
+ * pedido, muitos pedidos seguem na mesma ida e volta (pipelining); quem quiser o estilo
+ * bloqueante usa 'join()'. Os callbacks encadeados rodam na thread de leitura, então não
+ * devem bloquear.
+ *
+ * Se a conexão cair, todos os futures pendentes (e os próximos) falham com IOException.
+ */
+class BankerClient implements AutoCloseable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final BankerProtocol.FrameWriter writer;
+    private final Thread readerThread;
+    private final Thread writerThread;
+
+    // Pedidos enviados esperando resposta, por id
+    private final Map<Integer, CompletableFuture<BankerProtocol.Frame>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile IOException failure;
+
+    private final int resources;
+    private final int[] total;
+
+    private BankerClient(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.writer = new BankerProtocol.FrameWriter(new BufferedOutputStream(socket.getOutputStream(), 1 << 16), socket);
+        this.writerThread = new Thread(writer, "banker-client-writer");
+        this.readerThread = new Thread(this::readLoop, "banker-client-reader");
+        writerThread.setDaemon(true);
+        readerThread.setDaemon(true);
+        writerThread.start();
+        readerThread.start();
+
+        // Quantidade de recursos e total de cada um, usados para validar os vetores
+        BankerProtocol.Frame hello = send(BankerProtocol.HELLO, null, null).join();
+        this.resources = hello.values[0];
+        this.total = Arrays.copyOfRange(hello.values, 1, hello.values.length);
+    }
+
+    static BankerClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            return new BankerClient(socket);
+        } catch (RuntimeException e) {
+            socket.close();
+            throw new IOException("Falha no HELLO com o servidor", e);
+        }
+    }
+
+    int getNumberOfResources() {
+        return resources;
+    }
+
+    int[] getTotal() {
+        return total.clone();
+    }
+
+    // Identificador do novo cliente, ou -1 se a demanda for inválida
+    CompletableFuture<Integer> registerCustomer(int[] maxNeed) {
+        return send(BankerProtocol.REGISTER, null, maxNeed).thenApply(frame -> frame.values[0]);
+    }
+
+    CompletableFuture<Integer> deregisterCustomer(int customerNum) {
+        return send(BankerProtocol.DEREGISTER, new int[]{customerNum}, null).thenApply(frame -> (int) frame.code);
+    }
+
+    // 0 quando concedida (na hora ou depois de esperar no servidor), -1 se inválida ou cancelada
+    CompletableFuture<Integer> requestResources(int customerNum, int[] request) {
+        return requestResources(customerNum, request, 0);
+    }
+
+    // Igual, mas o servidor desiste depois de 'timeoutMillis' e a resposta é -2
+    CompletableFuture<Integer> requestResources(int customerNum, int[] request, int timeoutMillis) {
+        return send(BankerProtocol.REQUEST, new int[]{customerNum, timeoutMillis}, request).thenApply(frame -> (int) frame.code);
+    }
+
+    CompletableFuture<RequestResult> tryRequestResources(int customerNum, int[] request) {
+        return send(BankerProtocol.TRY_REQUEST, new int[]{customerNum}, request)
+                .thenApply(frame -> frame.values.length > 0 ? RequestResult.values()[frame.values[0]] : RequestResult.NOT_REGISTERED);
+    }
+
+    CompletableFuture<Integer> releaseResources(int customerNum, int[] release) {
+        return send(BankerProtocol.RELEASE, new int[]{customerNum}, release).thenApply(frame -> (int) frame.code);
+    }
+
+    CompletableFuture<int[]> getAvailable() {
+        return send(BankerProtocol.AVAILABLE, null, null).thenApply(frame -> frame.values);
+    }
+
+    // { alocação, necessidade } do cliente, ou null se ele não estiver registrado
+    CompletableFuture<int[][]> getCustomerState(int customerNum) {
+        return send(BankerProtocol.CUSTOMER, new int[]{customerNum}, null).thenApply(frame -> frame.code != BankerProtocol.OK ? null
+                : new int[][]{Arrays.copyOfRange(frame.values, 0, resources), Arrays.copyOfRange(frame.values, resources, 2 * resources)});
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        try {
+            writerThread.join(1000); // deixa sair o que ainda estava no buffer
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        socket.close();
+    }
+
+    private CompletableFuture<BankerProtocol.Frame> send(byte operation, int[] head, int[] vector) {
+        if (vector != null && vector.length != resources) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Vetor com " + vector.length
+                    + " posições; o servidor tem " + resources + " recursos"));
+        }
+        CompletableFuture<BankerProtocol.Frame> future = new CompletableFuture<>();
+        int id = nextId.incrementAndGet();
+        pending.put(id, future);
+        if (failure != null) fail(failure); // a conexão já caiu: não há quem complete o future
+        writer.send(id, operation, head, vector);
+        return future;
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                BankerProtocol.Frame frame = BankerProtocol.read(in);
+                CompletableFuture<BankerProtocol.Frame> future = pending.remove(frame.id);
+                if (future != null) future.complete(frame);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        writer.close();
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<BankerProtocol.Frame> future = pending.remove(id);
+            if (future != null) future.completeExceptionally(e);
+        }
+    }
+}
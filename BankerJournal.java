@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/*
+ * Journal (write-behind, com group commit) do estado do Banqueiro, para recuperar alocações
+ * depois de um reinício.
+ *
+ * O que vai para o journal não são as operações, e sim o estado resultante das linhas que cada
+ * operação alterou (demanda máxima e alocação do cliente, ou "removido"), capturado no mesmo
+ * ponto em que as linhas são publicadas para leitura (BankerState.publish). Assim toda forma de
+ * alterar o estado (requisição, liberação, lote, remoção, devolução de concessão abandonada) é
+ * coberta, e reaplicar um registro é idempotente: na recuperação a última versão de cada linha vence.
+ *
+ * Group commit: sob a trava do Banqueiro um registro custa só a cópia de 2m inteiros para um buffer
+ * em memória. Uma thread de fundo troca o buffer a cada 'commitMillis', grava o conteúdo como um
+ * bloco (tamanho + CRC32 + registros) com FileChannel e faz force. Registros ficam duráveis no
+ * máximo 'commitMillis' depois da operação, sem somar nada à latência de requestResources. Não é
+ * write-ahead: a concessão é devolvida ao cliente antes de ir para o disco, então um crash perde
+ * as operações dos últimos 'commitMillis' (a recuperação volta a um estado anterior consistente).
+ *
+ * Checkpoint: quando o journal passa de 'checkpointBytes', o próximo publish copia o estado inteiro
+ * (sob a trava) e a thread de fundo grava um snapshot em arquivo temporário, o renomeia atomicamente
+ * e recomeça o journal. Cada registro tem um número de sequência e o snapshot guarda o último que
+ * contém: na recuperação registros antigos são ignorados, então um crash entre o snapshot e o
+ * truncamento do journal não causa problema. Um bloco incompleto ou com CRC errado no fim do journal
+ * (crash no meio da escrita) encerra a recuperação ali. As linhas de uma operação entram sempre no
+ * mesmo bloco, então a recuperação termina entre duas operações, nunca no meio de uma.
+ *
+ * Arquivos no diretório: 'banker.snapshot' e 'banker.journal'.
+ */
+class BankerJournal {
+    private static final int SNAPSHOT_MAGIC = 0x42414e4b; // "BANK"
+    private static final byte ROW = 1;
+    private static final byte REMOVED = 2;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final FileChannel channel;
+    private final long commitMillis;
+    private final long checkpointBytes;
+
+    // Estado recuperado na abertura (null se o diretório não tinha estado)
+    private int[] recoveredTotal;
+    private int[][] recoveredMaximum;
+    private int[][] recoveredAllocation;
+
+    // Quantidade de recursos (definida pelo estado recuperado ou em attach)
+    private int resources;
+
+    // Buffer dos registros ainda não gravados, trocado pela thread de fundo (protegidos por 'this')
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private long sequence;
+    private Checkpoint checkpoint;
+
+    private long journalBytes;
+    private volatile boolean checkpointWanted;
+    private volatile IOException failure;
+    private volatile boolean running;
+    private Thread flusher;
+
+    // Estado inteiro copiado sob a trava e a posição do buffer em que foi copiado
+    private static class Checkpoint {
+        long sequence;
+        int boundary;
+        int[] total;
+        int slots;
+        boolean[] active;
+        int[] maximum;
+        int[] allocation;
+    }
+
+    private BankerJournal(Path directory, long commitMillis, long checkpointBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve("banker.snapshot");
+        this.journalFile = directory.resolve("banker.journal");
+        this.commitMillis = commitMillis;
+        this.checkpointBytes = checkpointBytes;
+        recover();
+        this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /*
+     * Abre o journal do diretório e recupera o estado que ele guarda (ver hasState).
+     * A gravação só começa quando um Banqueiro é criado com este journal (ver attach).
+     */
+    static BankerJournal open(Path directory) throws IOException {
+        return open(directory, 2, 64L << 20);
+    }
+
+    static BankerJournal open(Path directory, long commitMillis, long checkpointBytes) throws IOException {
+        return new BankerJournal(directory, commitMillis, checkpointBytes);
+    }
+
+    boolean hasState() {
+        return recoveredTotal != null;
+    }
+
+    int[] recoveredTotal() {
+        return recoveredTotal;
+    }
+
+    // Demanda máxima de cada slot recuperado (null para slots sem cliente)
+    int[][] recoveredMaximum() {
+        return recoveredMaximum;
+    }
+
+    int[][] recoveredAllocation() {
+        return recoveredAllocation;
+    }
+
+    // Erro de E/S da thread de fundo (a partir dele nada mais é gravado)
+    IOException failure() {
+        return failure;
+    }
+
+    /*
+     * Começa a gravar o estado do Banqueiro: grava um snapshot do estado atual (já recuperado),
+     * recomeça o journal e inicia a thread de group commit. Chamado sob a trava (ou no construtor).
+     */
+    void attach(BankerState state) throws IOException {
+        resources = state.resources;
+        recoveredTotal = null;
+        recoveredMaximum = null;
+        recoveredAllocation = null;
+
+        Checkpoint initial = capture(state);
+        writeSnapshot(initial);
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "banker-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Grava o que estiver pendente e encerra a thread de fundo
+    void close() throws IOException, InterruptedException {
+        if (flusher != null) {
+            running = false;
+            LockSupport.unpark(flusher);
+            flusher.join();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    /*
+     * Registra a linha atual (ou a remoção) de cada cliente alterado por uma operação. Chamado
+     * sob a trava do Banqueiro. Todas as linhas entram no buffer de uma vez, então a thread de
+     * fundo nunca separa uma operação entre dois blocos: um bloco perdido leva operações
+     * inteiras, e a recuperação nunca vê só parte de um lote ou de uma remoção.
+     */
+    void append(BankerState state, int[] customers, int count) {
+        int size = 0;
+        for (int k = 0; k < count; k++) size += 1 + 8 + 4 + (state.active[customers[k]] ? 8 * resources : 0);
+        synchronized (this) {
+            if (pending.remaining() < size) pending = grow(pending, size);
+            for (int k = 0; k < count; k++) {
+                int customer = customers[k];
+                pending.put(state.active[customer] ? ROW : REMOVED);
+                pending.putLong(++sequence);
+                pending.putInt(customer);
+                if (state.active[customer]) {
+                    int row = customer * resources;
+                    for (int j = 0; j < resources; j++) pending.putInt(state.maximum[row + j]);
+                    for (int j = 0; j < resources; j++) pending.putInt(state.allocation[row + j]);
+                }
+            }
+        }
+    }
+
+    boolean wantsCheckpoint() {
+        return checkpointWanted;
+    }
+
+    // Copia o estado inteiro para o próximo snapshot. Chamado sob a trava do Banqueiro.
+    void checkpoint(BankerState state) {
+        checkpointWanted = false;
+        synchronized (this) {
+            Checkpoint copy = capture(state);
+            copy.boundary = pending.position();
+            checkpoint = copy;
+        }
+    }
+
+    private Checkpoint capture(BankerState state) {
+        Checkpoint copy = new Checkpoint();
+        copy.sequence = sequence;
+        copy.total = state.total.clone();
+        copy.slots = state.customers;
+        copy.active = Arrays.copyOf(state.active, state.customers);
+        copy.maximum = Arrays.copyOf(state.maximum, state.customers * resources);
+        copy.allocation = Arrays.copyOf(state.allocation, state.customers * resources);
+        return copy;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            boolean stopping = !running;
+            ByteBuffer full;
+            Checkpoint snapshot;
+            synchronized (this) {
+                full = pending;
+                pending = spare;
+                spare = full;
+                snapshot = checkpoint;
+                checkpoint = null;
+            }
+
+            full.flip();
+            try {
+                if (failure == null) {
+                    if (snapshot == null) {
+                        writeBlock(full, full.limit());
+                    } else {
+                        // Registros anteriores ao snapshot vão para o journal antigo, o resto para o novo
+                        writeBlock(full, snapshot.boundary);
+                        writeSnapshot(snapshot);
+                        channel.truncate(0);
+                        channel.position(0);
+                        journalBytes = 0;
+                        writeBlock(full, full.limit());
+                    }
+                    if (journalBytes > checkpointBytes) checkpointWanted = true;
+                }
+            } catch (IOException e) {
+                failure = e;
+                System.err.println("Journal do Banqueiro desativado: " + e);
+            }
+            full.clear();
+
+            if (stopping) return;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(commitMillis));
+        }
+    }
+
+    // Grava os registros de position até 'end' como um bloco: tamanho, CRC32 e registros
+    private void writeBlock(ByteBuffer records, int end) throws IOException {
+        int length = end - records.position();
+        if (length == 0) return;
+
+        ByteBuffer slice = records.duplicate();
+        slice.limit(end);
+        CRC32 crc = new CRC32();
+        crc.update(slice.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(length).putInt((int) crc.getValue()).flip();
+        while (header.hasRemaining() || slice.hasRemaining()) {
+            channel.write(new ByteBuffer[] {header, slice});
+        }
+        channel.force(false);
+
+        records.position(end);
+        journalBytes += 8 + length;
+    }
+
+    // Snapshot em arquivo temporário, force e troca atômica pelo snapshot anterior
+    private void writeSnapshot(Checkpoint snapshot) throws IOException {
+        int active = 0;
+        for (int i = 0; i < snapshot.slots; i++) if (snapshot.active[i]) active++;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 4 + 4 * resources + 4 + active * (4 + 8 * resources));
+        buffer.putInt(SNAPSHOT_MAGIC).putLong(snapshot.sequence).putInt(resources);
+        for (int j = 0; j < resources; j++) buffer.putInt(snapshot.total[j]);
+        buffer.putInt(active);
+        for (int i = 0; i < snapshot.slots; i++) {
+            if (!snapshot.active[i]) continue;
+            buffer.putInt(i);
+            for (int j = 0; j < resources; j++) buffer.putInt(snapshot.maximum[i * resources + j]);
+            for (int j = 0; j < resources; j++) buffer.putInt(snapshot.allocation[i * resources + j]);
+        }
+        buffer.flip();
+
+        Path temporary = snapshotFile.resolveSibling("banker.snapshot.tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(true);
+        }
+        Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Lê o snapshot e reaplica os registros do journal com sequência posterior a ele.
+     * O arquivo inteiro é lido de uma vez e os registros só sobrescrevem linhas, então
+     * milhões de registros são recuperados em poucos segundos.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(snapshotFile)) return;
+
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (snapshot.getInt() != SNAPSHOT_MAGIC) throw new IOException("Snapshot inválido: " + snapshotFile);
+        long snapshotSequence = snapshot.getLong();
+        resources = snapshot.getInt();
+        int[] total = new int[resources];
+        for (int j = 0; j < resources; j++) total[j] = snapshot.getInt();
+
+        int[][] maximum = new int[16][];
+        int[][] allocation = new int[16][];
+        int active = snapshot.getInt();
+        for (int k = 0; k < active; k++) {
+            int slot = snapshot.getInt();
+            if (slot >= maximum.length) {
+                maximum = Arrays.copyOf(maximum, Math.max(slot + 1, maximum.length * 2));
+                allocation = Arrays.copyOf(allocation, maximum.length);
+            }
+            maximum[slot] = readVector(snapshot);
+            allocation[slot] = readVector(snapshot);
+        }
+        sequence = snapshotSequence;
+
+        if (Files.exists(journalFile)) {
+            ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+            CRC32 crc = new CRC32();
+            while (journal.remaining() >= 8) {
+                int length = journal.getInt();
+                int expected = journal.getInt();
+                if (length <= 0 || length > journal.remaining()) break; // bloco incompleto
+
+                ByteBuffer block = journal.slice();
+                block.limit(length);
+                crc.reset();
+                crc.update(block.duplicate());
+                if ((int) crc.getValue() != expected) break; // bloco corrompido
+                journal.position(journal.position() + length);
+
+                while (block.hasRemaining()) {
+                    byte type = block.get();
+                    long recordSequence = block.getLong();
+                    int slot = block.getInt();
+                    int[] max = type == ROW ? readVector(block) : null;
+                    int[] alloc = type == ROW ? readVector(block) : null;
+                    if (recordSequence <= snapshotSequence) continue; // já está no snapshot
+
+                    if (slot >= maximum.length) {
+                        maximum = Arrays.copyOf(maximum, Math.max(slot + 1, maximum.length * 2));
+                        allocation = Arrays.copyOf(allocation, maximum.length);
+                    }
+                    maximum[slot] = max;
+                    allocation[slot] = alloc;
+                    sequence = recordSequence;
+                }
+            }
+        }
+
+        recoveredTotal = total;
+        recoveredMaximum = maximum;
+        recoveredAllocation = allocation;
+    }
+
+    private int[] readVector(ByteBuffer buffer) {
+        int[] vector = new int[resources];
+        for (int j = 0; j < resources; j++) vector[j] = buffer.getInt();
+        return vector;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int size) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
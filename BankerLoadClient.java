@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Gerador de carga para o BankerServer: mede vazão e latência de ponta a ponta (cliente ->
+ * servidor -> Banqueiro -> cliente) pelo BankerClient.
+ *
+ * Cada conexão registra 'depth' clientes no servidor e mantém todos eles ocupados ao mesmo
+ * tempo: cada cliente pede uma fração aleatória da sua demanda máxima e, assim que a resposta
+ * chega, devolve o que recebeu e pede de novo. São então até 'depth' pedidos em voo por
+ * conexão (pipelining), sem nenhuma thread bloqueada esperando resposta. Como nenhum cliente
+ * segura recursos enquanto espera, toda requisição acaba sendo concedida.
+ *
+ * Modos: 'wait' usa REQUEST (espera no servidor até a concessão ou o prazo) e 'try' usa
+ * TRY_REQUEST (recusa na hora o que não pode ser atendido agora).
+ *
+ * Uso: java BankerLoadClient [--host=localhost] [--port=7070] [--connections=4] [--depth=16]
+ *                            [--seconds=10] [--warmup=2] [--mode=wait|try] [--timeout=1000]
+ */
+public class BankerLoadClient {
+    private static final int INVALID = BankerProtocol.INVALID;
+
+    // Operações concluídas (pedido + devolução contam como duas) e recusas
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LatencyHistogram releaseLatency = new LatencyHistogram();
+
+    private final boolean tryMode;
+    private final int timeoutMillis;
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+
+    private BankerLoadClient(boolean tryMode, int timeoutMillis) {
+        this.tryMode = tryMode;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = BankerProtocol.DEFAULT_PORT;
+        int connections = 4;
+        int depth = 16;
+        int seconds = 10;
+        int warmup = 2;
+        String mode = "wait";
+        int timeoutMillis = 1000;
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "host": host = value; break;
+                case "port": port = Integer.parseInt(value); break;
+                case "connections": connections = Integer.parseInt(value); break;
+                case "depth": depth = Integer.parseInt(value); break;
+                case "seconds": seconds = Integer.parseInt(value); break;
+                case "warmup": warmup = Integer.parseInt(value); break;
+                case "mode": mode = value; break;
+                case "timeout": timeoutMillis = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + arg);
+            }
+        }
+        if (!mode.equals("wait") && !mode.equals("try")) throw new IllegalArgumentException("Modo desconhecido: " + mode);
+
+        BankerLoadClient load = new BankerLoadClient(mode.equals("try"), timeoutMillis);
+        List<BankerClient> clients = new ArrayList<>();
+        try {
+            for (int c = 0; c < connections; c++) {
+                BankerClient client = BankerClient.connect(host, port);
+                clients.add(client);
+                load.start(client, depth);
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+            load.measuring = true;
+            long start = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            load.measuring = false;
+            long elapsed = System.nanoTime() - start;
+            load.running = false;
+
+            load.report(mode, connections, depth, elapsed);
+        } finally {
+            for (BankerClient client : clients) client.close();
+        }
+    }
+
+    // Registra 'depth' clientes na conexão e põe cada um no seu ciclo de pedir e devolver
+    private void start(BankerClient client, int depth) throws IOException {
+        int[] total = client.getTotal();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int k = 0; k < depth; k++) {
+            int[] maxNeed = new int[total.length];
+            for (int j = 0; j < total.length; j++) maxNeed[j] = random.nextInt(total[j] / 2 + 1);
+            int customer = client.registerCustomer(maxNeed).join();
+            if (customer == INVALID) throw new IOException("Servidor recusou o registro de um cliente");
+            cycle(client, customer, maxNeed);
+        }
+    }
+
+    /*
+     * Um ciclo: pede, e quando a resposta chega devolve o que foi concedido e começa o próximo.
+     * Os passos seguintes são encadeados nos futures, então rodam na thread de leitura da conexão.
+     */
+    private void cycle(BankerClient client, int customer, int[] maxNeed) {
+        if (!running) return;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] request = new int[maxNeed.length];
+        for (int j = 0; j < maxNeed.length; j++) request[j] = maxNeed[j] > 0 ? random.nextInt(maxNeed[j] + 1) : 0;
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> granted = tryMode
+                ? client.tryRequestResources(customer, request).thenApply(RequestResult::isGranted)
+                : client.requestResources(customer, request, timeoutMillis).thenApply(code -> code == 0);
+
+        granted.whenComplete((ok, error) -> {
+            if (error != null) {
+                errors.increment();
+                return; // conexão perdida: este ciclo termina
+            }
+            record(requestLatency, start);
+            if (!ok) {
+                if (measuring) refused.increment();
+                cycle(client, customer, maxNeed);
+                return;
+            }
+            long releaseStart = System.nanoTime();
+            client.releaseResources(customer, request).whenComplete((code, releaseError) -> {
+                if (releaseError != null) {
+                    errors.increment();
+                    return;
+                }
+                record(releaseLatency, releaseStart);
+                cycle(client, customer, maxNeed);
+            });
+        });
+    }
+
+    private void record(LatencyHistogram histogram, long start) {
+        if (!measuring) return;
+        histogram.record(System.nanoTime() - start);
+        operations.increment();
+    }
+
+    private void report(String mode, int connections, int depth, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        LatencyHistogram.Snapshot request = requestLatency.snapshot();
+        LatencyHistogram.Snapshot release = releaseLatency.snapshot();
+        System.out.printf("modo=%s conexões=%d profundidade=%d duração=%.1f s%n", mode, connections, depth, seconds);
+        System.out.printf("Operações: %d (%.0f/s), requisições recusadas: %d, erros: %d%n",
+                operations.sum(), operations.sum() / seconds, refused.sum(), errors.sum());
+        System.out.println("Latência da requisição: " + request);
+        System.out.println("Latência da liberação:  " + release);
+    }
+}
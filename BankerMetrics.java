@@ -0,0 +1,164 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Métricas do Banqueiro: contadores de concessões, negações por motivo e esperas, e
+ * histogramas do tempo de espera (no total e por classe de prioridade), do tempo segurando a
+ * trava e da duração da checagem de segurança.
+ *
+ * Os contadores são LongAdder e os histogramas têm baldes atômicos fixos, ambos listrados por
+ * thread (ver LatencyHistogram), então gravar uma métrica não aloca, não trava e quase nunca
+ * disputa linha de cache com outra thread. A leitura é feita por 'snapshot' (API) ou pelo
+ * MBean registrado com 'registerMBean' (JMX).
+ */
+class BankerMetrics implements BankerMetricsMBean {
+    // Requisições concedidas na hora / depois de esperar na fila
+    final LongAdder grantsImmediate = new LongAdder();
+    final LongAdder grantsAfterWait = new LongAdder();
+
+    // Requisições negadas (inválidas) por motivo
+    final LongAdder deniedNotRegistered = new LongAdder();
+    final LongAdder deniedExceedsNeed = new LongAdder();
+    final LongAdder deniedMalformed = new LongAdder(); // tamanho errado ou valor negativo
+
+    // Requisições que não puderam ser atendidas na hora, por motivo (esperaram ou, sem espera,
+    // foram recusadas)
+    final LongAdder waitsInsufficient = new LongAdder();
+    final LongAdder waitsUnsafe = new LongAdder();
+    final LongAdder waitsReserved = new LongAdder(); // caberiam, mas o disponível estava reservado (AGING)
+
+    // Reservas criadas para requisições que esperaram demais (ver AdmissionPolicy.AGING)
+    final LongAdder reservations = new LongAdder();
+
+    // Threads que acordaram sem a requisição concedida e voltaram a esperar
+    final LongAdder wakeupsWithoutGrant = new LongAdder();
+
+    // Esperas que terminaram sem concessão (interrupção, cancelamento, prazo, cliente removido)
+    final LongAdder waitsAbandoned = new LongAdder();
+    final LongAdder waitsTimedOut = new LongAdder(); // das abandonadas, as que esgotaram o prazo
+
+    final LongAdder releases = new LongAdder();
+    final LongAdder releasesInvalid = new LongAdder();
+
+    // Concessões provadas seguras em O(m), sem a checagem de segurança completa
+    final LongAdder fastPathGrants = new LongAdder();
+
+    final LatencyHistogram waitTime = new LatencyHistogram();
+
+    // Tempo de espera por classe de prioridade; as classes a partir da última ficam juntas
+    static final int PRIORITY_CLASSES = 4;
+    private final LatencyHistogram[] waitTimeByPriority = new LatencyHistogram[PRIORITY_CLASSES];
+    final LatencyHistogram lockHoldTime = new LatencyHistogram();
+    final LatencyHistogram safetyCheckTime = new LatencyHistogram();
+
+    BankerMetrics() {
+        for (int k = 0; k < PRIORITY_CLASSES; k++) waitTimeByPriority[k] = new LatencyHistogram();
+    }
+
+    LatencyHistogram waitTimeByPriority(int priority) {
+        return waitTimeByPriority[Math.min(priority, PRIORITY_CLASSES - 1)];
+    }
+
+    // Registra o MBean na plataforma com o nome 'bankers_algorithm:type=Banker,name=<name>'
+    void registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("bankers_algorithm:type=Banker,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Fotografia das métricas num instante (contadores e histogramas copiados)
+    static class Snapshot {
+        final long grantsImmediate, grantsAfterWait;
+        final long deniedNotRegistered, deniedExceedsNeed, deniedMalformed;
+        final long waitsInsufficient, waitsUnsafe, waitsReserved, wakeupsWithoutGrant, waitsAbandoned, waitsTimedOut;
+        final long releases, releasesInvalid, fastPathGrants, reservations;
+        final LatencyHistogram.Snapshot waitTime, lockHoldTime, safetyCheckTime;
+        final LatencyHistogram.Snapshot[] waitTimeByPriority = new LatencyHistogram.Snapshot[PRIORITY_CLASSES];
+
+        private Snapshot(BankerMetrics metrics) {
+            grantsImmediate = metrics.grantsImmediate.sum();
+            grantsAfterWait = metrics.grantsAfterWait.sum();
+            deniedNotRegistered = metrics.deniedNotRegistered.sum();
+            deniedExceedsNeed = metrics.deniedExceedsNeed.sum();
+            deniedMalformed = metrics.deniedMalformed.sum();
+            waitsInsufficient = metrics.waitsInsufficient.sum();
+            waitsUnsafe = metrics.waitsUnsafe.sum();
+            waitsReserved = metrics.waitsReserved.sum();
+            wakeupsWithoutGrant = metrics.wakeupsWithoutGrant.sum();
+            waitsAbandoned = metrics.waitsAbandoned.sum();
+            waitsTimedOut = metrics.waitsTimedOut.sum();
+            releases = metrics.releases.sum();
+            releasesInvalid = metrics.releasesInvalid.sum();
+            fastPathGrants = metrics.fastPathGrants.sum();
+            reservations = metrics.reservations.sum();
+            waitTime = metrics.waitTime.snapshot();
+            for (int k = 0; k < PRIORITY_CLASSES; k++) waitTimeByPriority[k] = metrics.waitTimeByPriority[k].snapshot();
+            lockHoldTime = metrics.lockHoldTime.snapshot();
+            safetyCheckTime = metrics.safetyCheckTime.snapshot();
+        }
+
+        @Override
+        public String toString() {
+            // Tempo de espera por classe só quando há esperas fora da classe 0
+            StringBuilder byPriority = new StringBuilder();
+            if (waitTime.count > waitTimeByPriority[0].count) {
+                for (int k = 0; k < PRIORITY_CLASSES; k++) {
+                    if (waitTimeByPriority[k].count == 0) continue;
+                    byPriority.append("\n  prioridade ").append(k).append(k == PRIORITY_CLASSES - 1 ? "+" : "")
+                            .append(": ").append(waitTimeByPriority[k]);
+                }
+            }
+            return "Concessões: " + grantsImmediate + " imediatas, " + grantsAfterWait + " após espera\n"
+                    + "Negações: " + deniedExceedsNeed + " excedem a necessidade, " + deniedNotRegistered + " cliente não registrado, "
+                    + deniedMalformed + " malformadas\n"
+                    + "Esperas: " + waitsInsufficient + " por falta de recursos, " + waitsUnsafe + " por estado inseguro, "
+                    + waitsReserved + " por reserva, " + wakeupsWithoutGrant + " acordaram sem concessão, "
+                    + waitsAbandoned + " abandonadas (" + waitsTimedOut + " por prazo)\n"
+                    + "Reservas para requisições antigas: " + reservations + "\n"
+                    + "Liberações: " + releases + " (" + releasesInvalid + " inválidas)\n"
+                    + "Concessões pela prova rápida: " + fastPathGrants + "\n"
+                    + "Tempo de espera: " + waitTime + byPriority + "\n"
+                    + "Tempo com a trava: " + lockHoldTime + "\n"
+                    + "Checagem de segurança: " + safetyCheckTime;
+        }
+    }
+
+    // --- BankerMetricsMBean ---
+
+    @Override public long getGrantsImmediate() { return grantsImmediate.sum(); }
+    @Override public long getGrantsAfterWait() { return grantsAfterWait.sum(); }
+    @Override public long getDeniedNotRegistered() { return deniedNotRegistered.sum(); }
+    @Override public long getDeniedExceedsNeed() { return deniedExceedsNeed.sum(); }
+    @Override public long getDeniedMalformed() { return deniedMalformed.sum(); }
+    @Override public long getWaitsInsufficient() { return waitsInsufficient.sum(); }
+    @Override public long getWaitsUnsafe() { return waitsUnsafe.sum(); }
+    @Override public long getWaitsReserved() { return waitsReserved.sum(); }
+    @Override public long getReservations() { return reservations.sum(); }
+    @Override public long getWakeupsWithoutGrant() { return wakeupsWithoutGrant.sum(); }
+    @Override public long getWaitsAbandoned() { return waitsAbandoned.sum(); }
+    @Override public long getWaitsTimedOut() { return waitsTimedOut.sum(); }
+    @Override public long getReleases() { return releases.sum(); }
+    @Override public long getReleasesInvalid() { return releasesInvalid.sum(); }
+    @Override public long getFastPathGrants() { return fastPathGrants.sum(); }
+
+    @Override public double getWaitTimeP50Micros() { return micros(waitTime, 0.50); }
+    @Override public double getWaitTimeP99Micros() { return micros(waitTime, 0.99); }
+    @Override public double getWaitTimeP999Micros() { return micros(waitTime, 0.999); }
+    @Override public double getWaitTimeMaxMicros() { return waitTime.snapshot().max / 1e3; }
+    @Override public double getLockHoldP50Micros() { return micros(lockHoldTime, 0.50); }
+    @Override public double getLockHoldP99Micros() { return micros(lockHoldTime, 0.99); }
+    @Override public double getLockHoldP999Micros() { return micros(lockHoldTime, 0.999); }
+    @Override public double getSafetyCheckP50Micros() { return micros(safetyCheckTime, 0.50); }
+    @Override public double getSafetyCheckP99Micros() { return micros(safetyCheckTime, 0.99); }
+    @Override public double getSafetyCheckP999Micros() { return micros(safetyCheckTime, 0.999); }
+    @Override public long getSafetyChecks() { return safetyCheckTime.snapshot().count; }
+
+    private static double micros(LatencyHistogram histogram, double quantile) {
+        return histogram.snapshot().percentile(quantile) / 1e3;
+    }
+}
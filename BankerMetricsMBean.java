@@ -0,0 +1,33 @@
+/*
+ * Interface JMX das métricas do Banqueiro (ver BankerMetrics.registerMBean).
+ * Tempos em microssegundos.
+ */
+public interface BankerMetricsMBean {
+    long getGrantsImmediate();
+    long getGrantsAfterWait();
+    long getDeniedNotRegistered();
+    long getDeniedExceedsNeed();
+    long getDeniedMalformed();
+    long getWaitsInsufficient();
+    long getWaitsUnsafe();
+    long getWaitsReserved();
+    long getReservations();
+    long getWakeupsWithoutGrant();
+    long getWaitsAbandoned();
+    long getWaitsTimedOut();
+    long getReleases();
+    long getReleasesInvalid();
+    long getFastPathGrants();
+
+    double getWaitTimeP50Micros();
+    double getWaitTimeP99Micros();
+    double getWaitTimeP999Micros();
+    double getWaitTimeMaxMicros();
+    double getLockHoldP50Micros();
+    double getLockHoldP99Micros();
+    double getLockHoldP999Micros();
+    double getSafetyCheckP50Micros();
+    double getSafetyCheckP99Micros();
+    double getSafetyCheckP999Micros();
+    long getSafetyChecks();
+}
@@ -0,0 +1,164 @@
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/*
+ * Protocolo binário entre BankerServer e BankerClient.
+ *
+ * Todo quadro (nos dois sentidos) tem o mesmo formato, com inteiros de 32 bits big-endian:
+ *   [tamanho][id][código][valores...]
+ * onde 'tamanho' conta os bytes depois dele (4 + 1 + 4 x valores), 'id' é escolhido pelo
+ * cliente e devolvido na resposta, e 'código' é a operação (pedido) ou o status (resposta).
+ * As respostas podem chegar fora de ordem: uma requisição que espera não segura as que vieram
+ * depois dela na mesma conexão, então o cliente pode mandar muitos pedidos sem esperar as
+ * respostas (pipelining) e casá-las pelo id.
+ *
+ * Valores de cada operação (m = quantidade de recursos):
+ *   HELLO                                       -> m, total[m]
+ *   REGISTER    max[m]                          -> cliente (ou -1 com status INVALID)
+ *   REQUEST     cliente, prazo(ms, 0 = sem), r[m] -> (vazio); espera até ser concedida
+ *   TRY_REQUEST cliente, r[m]                   -> RequestResult (ordinal)
+ *   RELEASE     cliente, r[m]                   -> (vazio)
+ *   DEREGISTER  cliente                         -> (vazio)
+ *   AVAILABLE                                   -> available[m]
+ *   CUSTOMER    cliente                         -> allocation[m], need[m]
+ *
+ * Cada conexão só opera sobre os clientes que ela mesma registrou, e nenhum valor pode ser negativo.
+ *
+ * Status: OK (0), INVALID (-1, inclusive requisição cancelada, quadro malformado ou com valor
+ * negativo e cliente de outra conexão) e NOT_NOW (-2, prazo esgotado ou requisição sem espera recusada), como em
+ * processBatch.
+ */
+final class BankerProtocol {
+    static final int DEFAULT_PORT = 7070;
+
+    // Operações
+    static final byte HELLO = 1;
+    static final byte REGISTER = 2;
+    static final byte REQUEST = 3;
+    static final byte TRY_REQUEST = 4;
+    static final byte RELEASE = 5;
+    static final byte DEREGISTER = 6;
+    static final byte AVAILABLE = 7;
+    static final byte CUSTOMER = 8;
+
+    // Status das respostas
+    static final byte OK = 0;
+    static final byte INVALID = -1;
+    static final byte NOT_NOW = -2;
+
+    // Maior quantidade de valores aceita num quadro (protege contra tamanhos corrompidos)
+    static final int MAX_VALUES = 1 << 16;
+
+    // Maior quantidade de bytes esperando para serem escritos numa conexão (ver FrameWriter)
+    static final int MAX_PENDING_BYTES = 16 << 20;
+
+    private BankerProtocol() {
+    }
+
+    // Quadro lido da conexão
+    static final class Frame {
+        final int id;
+        final byte code;
+        final int[] values;
+
+        Frame(int id, byte code, int[] values) {
+            this.id = id;
+            this.code = code;
+            this.values = values;
+        }
+    }
+
+    // Lê um quadro inteiro; lança EOFException quando a conexão é fechada
+    static Frame read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 5 || (length - 5) % 4 != 0 || (length - 5) / 4 > MAX_VALUES) {
+            throw new IOException("Quadro com tamanho inválido: " + length);
+        }
+        int id = in.readInt();
+        byte code = in.readByte();
+        int[] values = new int[(length - 5) / 4];
+        for (int k = 0; k < values.length; k++) values[k] = in.readInt();
+        return new Frame(id, code, values);
+    }
+
+    /*
+     * Escreve quadros numa conexão a partir de qualquer thread, sem que quem escreve bloqueie
+     * na rede: 'send' só copia o quadro para um buffer em memória e a thread de 'run' escreve
+     * tudo o que acumulou de uma vez. Com muitas respostas (ou pedidos) em sequência, várias
+     * vão no mesmo write, que é o que torna o pipelining barato.
+     *
+     * O buffer cresce até MAX_PENDING_BYTES. Se o outro lado continua mandando pedidos sem ler
+     * as respostas, ele chega no limite e a conexão é fechada, em vez de a memória acabar.
+     */
+    static final class FrameWriter implements Runnable {
+        private final OutputStream out;
+        private final Closeable connection;
+        private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+        private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+        private boolean closed;
+
+        // 'connection' é fechada se o buffer estourar (fechar só o stream poderia bloquear no write)
+        FrameWriter(OutputStream out, Closeable connection) {
+            this.out = out;
+            this.connection = connection;
+        }
+
+        // Enfileira o quadro [id][código][head...][vector...]; ignorado depois de 'close'
+        synchronized void send(int id, byte code, int[] head, int[] vector) {
+            if (closed) return;
+            int count = (head == null ? 0 : head.length) + (vector == null ? 0 : vector.length);
+            int size = 4 + 4 + 1 + 4 * count;
+            if (pending.position() + size > MAX_PENDING_BYTES) {
+                // O outro lado não está lendo: derruba a conexão, e quem lê percebe e encerra
+                close();
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // já estava fechada
+                }
+                return;
+            }
+            if (pending.remaining() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(MAX_PENDING_BYTES, Math.max(2 * pending.capacity(), pending.position() + size)));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(size - 4).putInt(id).put(code);
+            if (head != null) for (int value : head) pending.putInt(value);
+            if (vector != null) for (int value : vector) pending.putInt(value);
+            if (pending.position() == size) notifyAll(); // o buffer estava vazio: acorda o escritor
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    synchronized (this) {
+                        while (pending.position() == 0 && !closed) wait();
+                        if (pending.position() == 0) return; // fechado e sem nada para escrever
+                        ByteBuffer swap = writing;
+                        writing = pending;
+                        pending = swap;
+                    }
+                    out.write(writing.array(), 0, writing.position());
+                    out.flush();
+                    writing.clear();
+                }
+            } catch (IOException e) {
+                close(); // conexão perdida: quem lê percebe e encerra a conexão
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Servidor TCP que expõe um único Banqueiro para vários processos (ver BankerProtocol).
+ *
+ * Cada conexão tem uma thread do executor que lê e executa os pedidos (uma thread virtual por
+ * conexão quando o JDK tem, senão de plataforma; ver LoadDriver.createExecutor) e uma thread
+ * própria que escreve as respostas. Requisições que esperam usam requestResourcesAsync, então
+ * a thread de leitura nunca bloqueia: a resposta é enviada quando o future completa, pela
+ * thread que fez a liberação, e os próximos pedidos da mesma conexão continuam sendo atendidos
+ * enquanto isso.
+ *
+ * Os clientes registrados por uma conexão pertencem a ela: só ela pode pedir, devolver, consultar
+ * ou remover esses clientes (pedidos sobre clientes de outra conexão recebem INVALID), e quando
+ * a conexão cai eles são removidos, o que devolve o que estava alocado e cancela as requisições
+ * que esperavam.
+ *
+ * Uso: java BankerServer <recurso1> <recurso2> ... [--port=7070] [--executor=virtual]
+ *                        [--policy=fifo] [--aging=100]
+ */
+public class BankerServer {
+    private final Banker banker;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    BankerServer(Banker banker, int port, ExecutorService executor) throws IOException {
+        this.banker = banker;
+        this.serverSocket = new ServerSocket(port);
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] available = new int[args.length];
+        int resources = 0;
+        int port = BankerProtocol.DEFAULT_PORT;
+        String executorKind = "virtual";
+        AdmissionPolicy policy = AdmissionPolicy.FIFO;
+        long agingMillis = 100;
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                available[resources++] = Integer.parseInt(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) throw new IllegalArgumentException("Parâmetro sem valor: " + arg);
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "port": port = Integer.parseInt(value); break;
+                case "executor": executorKind = value; break;
+                case "policy": policy = AdmissionPolicy.parse(value); break;
+                case "aging": agingMillis = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + arg);
+            }
+        }
+        if (resources == 0) {
+            System.err.println("Uso: java BankerServer <recurso1> <recurso2> ... [--port=7070] [--executor=virtual] "
+                    + "[--policy=fifo] [--aging=100]");
+            System.exit(1);
+        }
+
+        Banker banker = new Banker(Arrays.copyOf(available, resources), 1024, new ParallelSafetyCheck(new ClassicSafetyCheck()));
+        banker.setAdmissionPolicy(policy, agingMillis);
+        BankerServer server = new BankerServer(banker, port, LoadDriver.createExecutor(executorKind));
+
+        // Ao encerrar (Ctrl+C) imprime as métricas acumuladas
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("\n" + banker.getMetrics().snapshot())));
+
+        System.out.println("Banqueiro ouvindo na porta " + port + " com recursos " + Arrays.toString(Arrays.copyOf(available, resources)));
+        server.serve();
+    }
+
+    // Aceita conexões até o socket ser fechado
+    void serve() throws IOException {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> handle(socket));
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void close() throws IOException {
+        serverSocket.close();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void handle(Socket socket) {
+        Set<Integer> owned = new HashSet<>(); // só acessado por esta thread
+        BankerProtocol.FrameWriter writer = null;
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            writer = new BankerProtocol.FrameWriter(new BufferedOutputStream(socket.getOutputStream(), 1 << 16), socket);
+            // Thread própria: num pool fixo os leitores (que bloqueiam) podem ocupar todas as threads
+            Thread writerThread = new Thread(writer, "banker-server-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+
+            while (true) {
+                BankerProtocol.Frame frame = BankerProtocol.read(in);
+                execute(frame, writer, owned);
+            }
+        } catch (EOFException | SocketException e) {
+            // conexão encerrada pelo cliente
+        } catch (IOException e) {
+            System.err.println("Conexão encerrada com erro: " + e);
+        } finally {
+            for (int customer : owned) banker.deregisterCustomer(customer);
+            if (writer != null) writer.close();
+        }
+    }
+
+    private void execute(BankerProtocol.Frame frame, BankerProtocol.FrameWriter writer, Set<Integer> owned) {
+        int m = banker.getNumberOfResources();
+        int[] values = frame.values;
+        int id = frame.id;
+
+        switch (frame.code) {
+            case BankerProtocol.HELLO: {
+                // Total = disponível + alocado a todos, do mesmo instante
+                BankerSnapshot snapshot = banker.snapshot();
+                int[] total = snapshot.getAvailable();
+                for (int i = 0; i < snapshot.getNumberOfSlots(); i++) {
+                    if (!snapshot.isActive(i)) continue;
+                    int[] allocation = snapshot.getAllocationRow(i);
+                    for (int j = 0; j < m; j++) total[j] += allocation[j];
+                }
+                writer.send(id, BankerProtocol.OK, new int[]{m}, total);
+                return;
+            }
+            case BankerProtocol.REGISTER: {
+                if (values.length != m) break;
+                int customer = banker.registerCustomer(values);
+                if (customer >= 0) owned.add(customer);
+                writer.send(id, customer >= 0 ? BankerProtocol.OK : BankerProtocol.INVALID, new int[]{customer}, null);
+                return;
+            }
+            case BankerProtocol.REQUEST: {
+                if (values.length != m + 2 || hasNegative(values)) break;
+                if (!owned.contains(values[0])) break;
+                int[] request = Arrays.copyOfRange(values, 2, values.length);
+                CompletableFuture<Integer> future = values[1] > 0
+                        ? banker.requestResourcesAsync(values[0], request, values[1], TimeUnit.MILLISECONDS)
+                        : banker.requestResourcesAsync(values[0], request);
+                // Completa na hora ou, se esperar, na thread que liberar os recursos
+                future.whenComplete((result, error) -> writer.send(id,
+                        error != null ? BankerProtocol.NOT_NOW : result == 0 ? BankerProtocol.OK : BankerProtocol.INVALID, null, null));
+                return;
+            }
+            case BankerProtocol.TRY_REQUEST: {
+                if (values.length != m + 1) break;
+                if (!owned.contains(values[0])) break;
+                if (hasNegative(values)) {
+                    writer.send(id, BankerProtocol.INVALID, new int[]{RequestResult.INVALID.ordinal()}, null);
+                    return;
+                }
+                RequestResult result = banker.tryRequestResources(values[0], Arrays.copyOfRange(values, 1, values.length));
+                byte status = result.isGranted() ? BankerProtocol.OK : result.mustWait() ? BankerProtocol.NOT_NOW : BankerProtocol.INVALID;
+                writer.send(id, status, new int[]{result.ordinal()}, null);
+                return;
+            }
+            case BankerProtocol.RELEASE: {
+                if (values.length != m + 1 || hasNegative(values)) break;
+                if (!owned.contains(values[0])) break;
+                int result = banker.releaseResources(values[0], Arrays.copyOfRange(values, 1, values.length));
+                writer.send(id, result == 0 ? BankerProtocol.OK : BankerProtocol.INVALID, null, null);
+                return;
+            }
+            case BankerProtocol.DEREGISTER: {
+                if (values.length != 1) break;
+                if (!owned.contains(values[0])) break;
+                int result = banker.deregisterCustomer(values[0]);
+                if (result == 0) owned.remove(values[0]);
+                writer.send(id, result == 0 ? BankerProtocol.OK : BankerProtocol.INVALID, null, null);
+                return;
+            }
+            case BankerProtocol.AVAILABLE: {
+                writer.send(id, BankerProtocol.OK, null, banker.getAvailable());
+                return;
+            }
+            case BankerProtocol.CUSTOMER: {
+                if (values.length != 1) break;
+                if (!owned.contains(values[0])) break;
+                BankerSnapshot snapshot = banker.snapshot(); // alocação e necessidade do mesmo instante
+                if (!snapshot.isActive(values[0])) break;
+                writer.send(id, BankerProtocol.OK, snapshot.getAllocationRow(values[0]), snapshot.getNeedRow(values[0]));
+                return;
+            }
+            default:
+                break;
+        }
+        // Operação desconhecida, quantidade de valores errada, valor negativo ou cliente de outra conexão
+        writer.send(id, BankerProtocol.INVALID, null, null);
+    }
+
+    /*
+     * Nenhum valor de um quadro (cliente, prazo ou vetor) pode ser negativo: um vetor negativo
+     * inverteria a requisição ou a liberação no Banqueiro compartilhado por todas as conexões.
+     * O Banqueiro também recusa esses vetores; aqui eles nem chegam a ele.
+     */
+    private static boolean hasNegative(int[] values) {
+        for (int value : values) {
+            if (value < 0) return true;
+        }
+        return false;
+    }
+}
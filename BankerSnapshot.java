@@ -0,0 +1,64 @@
+import java.util.Arrays;
+
+/*
+ * Fotografia imutável e versionada do estado do Banqueiro (disponível, alocação e necessidade).
+ *
+ * É montada sem a trava do Banqueiro, a partir das linhas publicadas pelo BankerState ao fim
+ * de cada operação (ver BankerState.publish), e é consistente: todas as linhas e o disponível
+ * correspondem ao mesmo instante entre duas operações. A versão cresce a cada publicação.
+ */
+final class BankerSnapshot {
+    // Linha publicada de um cliente (imutável; null para slots sem cliente)
+    static final class Row {
+        final int[] allocation;
+        final int[] need;
+
+        Row(int[] allocation, int[] need) {
+            this.allocation = allocation;
+            this.need = need;
+        }
+    }
+
+    private final long version;
+    private final int[] available;
+    private final Row[] rows;
+
+    BankerSnapshot(long version, int[] available, Row[] rows) {
+        this.version = version;
+        this.available = available;
+        this.rows = rows;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNumberOfResources() {
+        return available.length;
+    }
+
+    // Quantidade de slots (ativos ou não); os identificadores de clientes vão de 0 a esse valor
+    public int getNumberOfSlots() {
+        return rows.length;
+    }
+
+    public boolean isActive(int customerNum) {
+        return customerNum >= 0 && customerNum < rows.length && rows[customerNum] != null;
+    }
+
+    public int[] getAvailable() {
+        return Arrays.copyOf(available, available.length);
+    }
+
+    public int[] getAllocationRow(int customerNum) {
+        return isActive(customerNum) ? Arrays.copyOf(rows[customerNum].allocation, available.length) : new int[available.length];
+    }
+
+    public int[] getNeedRow(int customerNum) {
+        return isActive(customerNum) ? Arrays.copyOf(rows[customerNum].need, available.length) : new int[available.length];
+    }
+
+    public int getNeedValue(int customerNum, int valuePos) {
+        return isActive(customerNum) ? rows[customerNum].need[valuePos] : 0;
+    }
+}
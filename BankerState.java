@@ -0,0 +1,489 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * Estado do Banqueiro guardado em matrizes "achatadas" (row-major) de tipo primitivo.
+ * O elemento [i][j] de uma matriz fica na posição (i * resources + j) do vetor.
+ *
+ * Todas as operações de simulação (concessão temporária, desfazer, checagem de segurança)
+ * trabalham no próprio estado e nos buffers de rascunho reutilizáveis da SafetyCheck, assim
+ * decidir se uma requisição é concedida ou negada não aloca nenhum objeto novo.
+ *
+ * O número de clientes não é fixo: cada cliente ocupa uma posição ("slot") das matrizes.
+ * Clientes novos reaproveitam slots de clientes que saíram e, quando não há nenhum livre,
+ * a capacidade dobra (crescimento amortizado).
+ *
+ * Prova rápida de segurança: o Banqueiro só sai de um estado seguro para outro seguro, então
+ * muitas concessões podem ser provadas seguras em O(m), sem rodar a simulação inteira:
+ *  - se depois da concessão a necessidade restante do cliente cabe no disponível, ele pode
+ *    terminar primeiro e devolver tudo, e o resto da sequência segura anterior continua valendo;
+ *  - a última sequência segura encontrada é guardada junto com a "folga" (headroom) mínima,
+ *    por recurso, entre o trabalho e a necessidade de cada cliente ao longo dela. Uma concessão
+ *    que cabe nessa folga mantém a mesma sequência segura.
+ * Só quando as duas provas falham a SafetyCheck completa é executada.
+ *
+ * Leituras sem trava: as matrizes acima só podem ser lidas sob a trava do Banqueiro. Para quem
+ * só consulta (clientes, monitores), cada operação marca as linhas que alterou e, ao fim dela,
+ * 'publish' troca essas linhas por cópias imutáveis (custo O(m) por cliente alterado). A troca é
+ * feita sob a escrita de um StampedLock que só dura a publicação; leitores usam leitura otimista
+ * e nunca disputam a trava do Banqueiro nem esperam uma checagem de segurança.
+ */
+class BankerState {
+    /* quantidade de tipos de recursos (fixa) */
+    final int resources;
+
+    /* quantidade de slots em uso (ativos ou aposentados); toda iteração vai de 0 a customers */
+    int customers;
+
+    /* quantidade de clientes ativos (slots em uso menos os aposentados) */
+    int activeCustomers;
+
+    /* o montante total de cada recurso (disponível + alocado a todos) */
+    final int[] total;
+
+    /* o montante disponível de cada recurso */
+    final int[] available;
+
+    /* a demanda máxima de cada cliente (capacity x resources) */
+    int[] maximum;
+
+    /* o montante correntemente alocado a cada cliente (capacity x resources) */
+    int[] allocation;
+
+    /* a necessidade remanescente de cada cliente (capacity x resources) */
+    int[] need;
+
+    /* se o slot pertence a um cliente registrado (false para slots aposentados) */
+    boolean[] active;
+
+    // Pilha de slots aposentados que podem ser reaproveitados
+    private int[] freeSlots;
+    private int freeCount;
+
+    // Estratégia usada para a checagem de segurança (clássica, worklist, ...)
+    private final SafetyCheck safetyCheck;
+
+    // Histograma da duração de cada checagem de segurança (null = não mede)
+    LatencyHistogram safetyCheckTimes;
+
+    // Contador de concessões provadas seguras sem a checagem completa (null = não conta)
+    LongAdder fastPathGrants;
+
+    // Se o estado atual é sabidamente seguro (pré-condição das provas rápidas)
+    private boolean knownSafe = true;
+
+    /*
+     * Última sequência segura (preenchida pela SafetyCheck) e a folga mínima por recurso ao longo
+     * dela: headroom[j] <= work[j] - need[i][j] para toda posição da sequência. A folga é um limite
+     * inferior: cada concessão a subtrai (a folga real diminui no máximo isso) e liberações não a
+     * alteram (a folga real só cresce).
+     */
+    int[] safeSequence;
+    int sequenceLength;
+    private boolean sequenceValid = true;
+    private final int[] headroom;
+    private final int[] scratchWork;
+
+    // Linhas publicadas para leitura sem trava (ver publish) e clientes alterados desde a última
+    private final StampedLock published = new StampedLock();
+    private BankerSnapshot.Row[] publishedRows;
+    private int[] publishedAvailable;
+    private long version;
+    private int[] dirty;
+    private int dirtyCount;
+    private boolean[] isDirty;
+
+    // Journal que recebe as linhas publicadas (null = sem persistência; ver BankerJournal)
+    BankerJournal journal;
+
+    BankerState(int[] available, int initialCapacity, SafetyCheck safetyCheck) {
+        int capacity = Math.max(1, initialCapacity);
+        this.resources = available.length;
+        this.total = Arrays.copyOf(available, resources);
+        this.available = Arrays.copyOf(available, resources);
+        this.maximum = new int[capacity * resources];
+        // Garbage Collector garante que todos valores do 'allocation' serão 0
+        this.allocation = new int[capacity * resources];
+        this.need = new int[capacity * resources];
+        this.active = new boolean[capacity];
+        this.freeSlots = new int[capacity];
+        this.safetyCheck = safetyCheck;
+        this.safeSequence = new int[capacity];
+        this.headroom = new int[resources];
+        this.scratchWork = new int[resources];
+        Arrays.fill(headroom, Integer.MAX_VALUE); // sem clientes, qualquer concessão cabe
+        this.publishedRows = new BankerSnapshot.Row[0];
+        this.publishedAvailable = Arrays.copyOf(available, resources);
+        this.dirty = new int[capacity];
+        this.isDirty = new boolean[capacity];
+    }
+
+    /*
+     * Recoloca um cliente recuperado do journal no mesmo slot, com sua alocação.
+     * Depois de restaurar todos os slots, 'finishRestore' refaz a pilha de slots livres.
+     */
+    void restore(int slot, int[] maxNeed, int[] allocated) {
+        while (slot >= capacity()) grow(capacity() * 2);
+        customers = Math.max(customers, slot + 1);
+
+        int row = slot * resources;
+        for (int j = 0; j < resources; j++) {
+            maximum[row + j] = maxNeed[j];
+            allocation[row + j] = allocated[j];
+            need[row + j] = maxNeed[j] - allocated[j];
+            available[j] -= allocated[j];
+        }
+        active[slot] = true;
+        activeCustomers++;
+        markDirty(slot);
+    }
+
+    // Devolve se o estado restaurado é seguro
+    boolean finishRestore() {
+        for (int slot = customers - 1; slot >= 0; slot--) {
+            if (!active[slot]) freeSlots[freeCount++] = slot;
+        }
+        // O estado gravado era seguro; a checagem refaz a sequência segura e a folga
+        return isSafe();
+    }
+
+    /*
+     * Igual a finishRestore, para um estado que já se sabe seguro com a sequência dada (por
+     * exemplo, uma cópia de outro BankerState): só refaz a folga, em O(n m), sem a checagem.
+     */
+    void finishRestore(int[] sequence, int length) {
+        for (int slot = customers - 1; slot >= 0; slot--) {
+            if (!active[slot]) freeSlots[freeCount++] = slot;
+        }
+        System.arraycopy(sequence, 0, safeSequence, 0, length);
+        sequenceLength = length;
+        knownSafe = true;
+        sequenceValid = true;
+        rebuildHeadroom();
+    }
+
+    int capacity() {
+        return active.length;
+    }
+
+    /*
+     * Registra um cliente com a demanda máxima informada e devolve seu slot.
+     * need = maximum - allocation, que nesse instante é o próprio maximum.
+     */
+    int register(int[] maxNeed) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (customers == capacity()) grow(capacity() * 2);
+            slot = customers++;
+        }
+
+        int row = slot * resources;
+        for (int j = 0; j < resources; j++) {
+            maximum[row + j] = maxNeed[j];
+            allocation[row + j] = 0;
+            need[row + j] = maxNeed[j];
+        }
+        active[slot] = true;
+        activeCustomers++;
+        markDirty(slot);
+
+        /*
+         * Sem nada alocado, o novo cliente pode ir para o fim da sequência segura: nesse ponto o
+         * trabalho é o total de recursos, então sua folga é total - maximum (se negativa, o estado
+         * deixa de ser seguro).
+         */
+        if (!fitsTotal(maxNeed)) knownSafe = false;
+        if (sequenceValid) safeSequence[sequenceLength++] = slot;
+        for (int j = 0; j < resources; j++) {
+            headroom[j] = Math.min(headroom[j], total[j] - maxNeed[j]);
+        }
+        return slot;
+    }
+
+    /*
+     * Aposenta o slot do cliente: sua alocação volta ao disponível e o slot
+     * fica zerado (sem alocação e sem necessidade) até ser reaproveitado.
+     */
+    void deregister(int customer) {
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            available[j] += allocation[row + j];
+            maximum[row + j] = 0;
+            allocation[row + j] = 0;
+            need[row + j] = 0;
+        }
+        active[customer] = false;
+        activeCustomers--;
+        freeSlots[freeCount++] = customer;
+        markDirty(customer);
+
+        // O estado continua seguro, mas a sequência guardada tem um slot aposentado
+        sequenceValid = false;
+    }
+
+    boolean isActive(int customer) {
+        return customer >= 0 && customer < customers && active[customer];
+    }
+
+    // Maximum <= Total (um cliente que pede mais do que existe nunca conseguiria terminar)
+    boolean fitsTotal(int[] maxNeed) {
+        for (int j = 0; j < resources; j++) {
+            if (maxNeed[j] < 0 || maxNeed[j] > total[j]) return false;
+        }
+        return true;
+    }
+
+    // Um valor por recurso, nenhum negativo (um valor negativo inverteria a operação)
+    boolean isWellFormed(int[] vector) {
+        if (vector == null || vector.length != resources) return false;
+        for (int j = 0; j < resources; j++) {
+            if (vector[j] < 0) return false;
+        }
+        return true;
+    }
+
+    // Request <= Need[customer] (e a requisição é bem formada)
+    boolean fitsNeed(int customer, int[] request) {
+        if (!isWellFormed(request)) return false;
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            if (request[j] > need[row + j]) return false;
+        }
+        return true;
+    }
+
+    // Request <= Available (só para requisições que já passaram por fitsNeed)
+    boolean fitsAvailable(int[] request) {
+        for (int j = 0; j < resources; j++) {
+            if (request[j] > available[j]) return false;
+        }
+        return true;
+    }
+
+    // Release <= Allocation[customer] (e a liberação é bem formada)
+    boolean fitsAllocation(int customer, int[] release) {
+        if (!isWellFormed(release)) return false;
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            if (release[j] > allocation[row + j]) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Lógica de Alocação (aplicada diretamente no estado):
+     * - Os recursos requisitados são "retirados" do disponível;
+     * - Os recursos requisitados são "adicionados" à alocação do cliente (em uso);
+     * - A necessidade restante do cliente é "reduzida".
+     */
+    void grant(int customer, int[] request) {
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            available[j] -= request[j];
+            allocation[row + j] += request[j];
+            need[row + j] -= request[j];
+            headroom[j] -= request[j];
+        }
+        markDirty(customer);
+        // Até ser provado de novo, o estado resultante não é sabidamente seguro
+        knownSafe = false;
+    }
+
+    /*
+     * Lógica de Liberação (também usada para desfazer uma concessão temporária):
+     * - Os recursos liberados são "adicionados" ao disponível;
+     * - Os recursos liberados são "retirados" da alocação do cliente (não mais em uso);
+     * - A necessidade restante do cliente é "aumentada".
+     */
+    void release(int customer, int[] release) {
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            available[j] += release[j];
+            allocation[row + j] -= release[j];
+            need[row + j] += release[j];
+        }
+        markDirty(customer);
+    }
+
+    /*
+     * Concede a requisição temporariamente e verifica se o estado resultante é seguro.
+     * Caso não seja, a concessão é desfeita no lugar e o estado volta a ser o anterior.
+     */
+    boolean tryGrant(int customer, int[] request) {
+        boolean wasSafe = knownSafe;
+        boolean wasDirty = isDirty[customer];
+        grant(customer, request);
+
+        // Provas rápidas (O(m)) a partir de um estado sabidamente seguro
+        if (wasSafe && (needFitsAvailable(customer) || headroomHolds())) {
+            knownSafe = true;
+            if (fastPathGrants != null) fastPathGrants.increment();
+            return true;
+        }
+
+        if (isSafe()) return true;
+        release(customer, request);
+        knownSafe = wasSafe; // desfeita a concessão, o estado volta a ser o anterior
+        if (!wasDirty) {
+            // A linha voltou a ser a publicada: sai da lista (grant a colocou por último)
+            isDirty[customer] = false;
+            dirtyCount--;
+        }
+        return false;
+    }
+
+    // Checagem de segurança completa; se seguro, guarda a sequência e recalcula a folga
+    boolean isSafe() {
+        boolean safe;
+        if (safetyCheckTimes == null) {
+            safe = safetyCheck.isSafe(this);
+        } else {
+            long start = System.nanoTime();
+            safe = safetyCheck.isSafe(this);
+            safetyCheckTimes.record(System.nanoTime() - start);
+        }
+
+        knownSafe = safe;
+        sequenceValid = safe;
+        if (safe) rebuildHeadroom();
+        return safe;
+    }
+
+    // Need[customer] <= Available: o cliente consegue terminar imediatamente
+    private boolean needFitsAvailable(int customer) {
+        int row = customer * resources;
+        for (int j = 0; j < resources; j++) {
+            if (need[row + j] > available[j]) return false;
+        }
+        return true;
+    }
+
+    // A folga (já descontada a concessão) continua não negativa: a sequência guardada ainda vale
+    private boolean headroomHolds() {
+        if (!sequenceValid) return false;
+        for (int j = 0; j < resources; j++) {
+            if (headroom[j] < 0) return false;
+        }
+        return true;
+    }
+
+    // Percorre a sequência segura encontrada pela SafetyCheck medindo a menor folga por recurso
+    private void rebuildHeadroom() {
+        System.arraycopy(available, 0, scratchWork, 0, resources);
+        Arrays.fill(headroom, Integer.MAX_VALUE);
+        for (int k = 0; k < sequenceLength; k++) {
+            int row = safeSequence[k] * resources;
+            for (int j = 0; j < resources; j++) {
+                headroom[j] = Math.min(headroom[j], scratchWork[j] - need[row + j]);
+                scratchWork[j] += allocation[row + j];
+            }
+        }
+    }
+
+    private void markDirty(int customer) {
+        safetyCheck.rowChanged(this, customer);
+        if (isDirty[customer]) return;
+        isDirty[customer] = true;
+        dirty[dirtyCount++] = customer;
+    }
+
+    /*
+     * Publica as linhas alteradas desde a última publicação e o disponível. Chamado sob a trava
+     * do Banqueiro ao fim de cada operação, quando o estado já não tem concessões temporárias.
+     */
+    void publish() {
+        if (dirtyCount == 0) return;
+
+        // As mesmas linhas vão para o journal (só o estado já confirmado, nunca uma concessão temporária)
+        if (journal != null) {
+            journal.append(this, dirty, dirtyCount);
+            if (journal.wantsCheckpoint()) journal.checkpoint(this);
+        }
+
+        long stamp = published.writeLock();
+        try {
+            if (publishedRows.length < customers) publishedRows = Arrays.copyOf(publishedRows, capacity());
+            for (int k = 0; k < dirtyCount; k++) {
+                int customer = dirty[k];
+                isDirty[customer] = false;
+                publishedRows[customer] = active[customer] ? new BankerSnapshot.Row(row(allocation, customer), row(need, customer)) : null;
+            }
+            dirtyCount = 0;
+            publishedAvailable = Arrays.copyOf(available, resources);
+            version++;
+        } finally {
+            published.unlockWrite(stamp);
+        }
+    }
+
+    // Linha publicada do cliente (null se não estiver registrado), sem a trava do Banqueiro
+    BankerSnapshot.Row publishedRow(int customer) {
+        long stamp = published.tryOptimisticRead();
+        BankerSnapshot.Row row = rowOf(publishedRows, customer);
+        if (published.validate(stamp)) return row;
+
+        stamp = published.readLock();
+        try {
+            return rowOf(publishedRows, customer);
+        } finally {
+            published.unlockRead(stamp);
+        }
+    }
+
+    /*
+     * Cópia do disponível publicado, sem a trava do Banqueiro e sem copiar as linhas. O vetor
+     * publicado nunca é alterado (publish troca a referência), então basta ler a referência
+     * sob o carimbo otimista e copiar depois.
+     */
+    int[] publishedAvailable() {
+        long stamp = published.tryOptimisticRead();
+        int[] current = publishedAvailable;
+        if (!published.validate(stamp)) {
+            stamp = published.readLock();
+            try {
+                current = publishedAvailable;
+            } finally {
+                published.unlockRead(stamp);
+            }
+        }
+        return Arrays.copyOf(current, current.length);
+    }
+
+    // Fotografia consistente de todas as linhas publicadas, sem a trava do Banqueiro
+    BankerSnapshot snapshot() {
+        long stamp = published.tryOptimisticRead();
+        BankerSnapshot snapshot = new BankerSnapshot(version, publishedAvailable, publishedRows.clone());
+        if (published.validate(stamp)) return snapshot;
+
+        stamp = published.readLock();
+        try {
+            return new BankerSnapshot(version, publishedAvailable, publishedRows.clone());
+        } finally {
+            published.unlockRead(stamp);
+        }
+    }
+
+    private static BankerSnapshot.Row rowOf(BankerSnapshot.Row[] rows, int customer) {
+        return customer >= 0 && customer < rows.length ? rows[customer] : null;
+    }
+
+    // Cópia de uma linha de uma das matrizes (usada para exibição e publicação)
+    int[] row(int[] matrix, int customer) {
+        int row = customer * resources;
+        return Arrays.copyOfRange(matrix, row, row + resources);
+    }
+
+    private void grow(int capacity) {
+        maximum = Arrays.copyOf(maximum, capacity * resources);
+        allocation = Arrays.copyOf(allocation, capacity * resources);
+        need = Arrays.copyOf(need, capacity * resources);
+        active = Arrays.copyOf(active, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        safeSequence = Arrays.copyOf(safeSequence, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        isDirty = Arrays.copyOf(isDirty, capacity);
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/*
+ * Análise "e se" sobre uma fotografia do Banqueiro, sem tocar no Banqueiro real: quais
+ * requisições seriam concedidas agora, quanto cada cliente ainda pode receber sem tornar o
+ * estado inseguro e o que muda se a capacidade ou a demanda máxima de um cliente mudarem.
+ *
+ * O planejador é imutável: guarda o total, a demanda máxima e a alocação da fotografia, e
+ * cada consulta monta a sua própria cópia do estado (um BankerState com a sua própria
+ * SafetyCheck, que tem buffers de rascunho), na qual as perguntas são feitas com concessões
+ * temporárias desfeitas no lugar, como no Banqueiro. Consultas em lote são divididas em
+ * pedaços processados em paralelo (parallel streams), cada pedaço com uma cópia que só vive
+ * enquanto ele roda, então não há trava nenhuma, nem a do Banqueiro nem entre os pedaços.
+ * Montar a cópia custa O(n m): a sequência segura do estado base é reaproveitada.
+ * 'withCapacity' e 'withMaximum' devolvem um novo planejador com a mudança aplicada.
+ *
+ * Uso: new CapacityPlanner(banker.snapshot(), ClassicSafetyCheck::new)
+ */
+final class CapacityPlanner {
+    private final int resources;
+    private final int[] total;
+    private final int[][] maximum;     // null para slots sem cliente
+    private final int[][] allocation;  // null para slots sem cliente
+    private final Supplier<SafetyCheck> safetyChecks;
+    private final boolean safe;
+
+    /*
+     * Para cada cliente e recurso, quanto dá para conceder sem que a sequência segura do estado
+     * base deixe de servir (ver sequenceBounds); limite inferior da busca em maxSafeGrant.
+     * Matriz plana n x m como as do BankerState; null se o estado base for inseguro.
+     */
+    private final int[] sequenceBound;
+
+    // Sequência segura do estado base, reaproveitada por cada cópia (null se for inseguro)
+    private final int[] sequence;
+
+    // Pedaços por thread do pool nas consultas em lote (equilibra pedaços de custo desigual)
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    CapacityPlanner(BankerSnapshot snapshot, Supplier<SafetyCheck> safetyChecks) {
+        this.resources = snapshot.getNumberOfResources();
+        this.total = snapshot.getAvailable();
+        this.maximum = new int[snapshot.getNumberOfSlots()][];
+        this.allocation = new int[snapshot.getNumberOfSlots()][];
+        for (int i = 0; i < maximum.length; i++) {
+            if (!snapshot.isActive(i)) continue;
+            allocation[i] = snapshot.getAllocationRow(i);
+            maximum[i] = snapshot.getNeedRow(i);
+            for (int j = 0; j < resources; j++) {
+                maximum[i][j] += allocation[i][j];
+                total[j] += allocation[i][j];
+            }
+        }
+        this.safetyChecks = safetyChecks;
+        BankerState state = restoreState();
+        this.safe = state.finishRestore();
+        this.sequence = safe ? Arrays.copyOf(state.safeSequence, state.sequenceLength) : null;
+        this.sequenceBound = safe ? sequenceBounds(state) : null;
+    }
+
+    private CapacityPlanner(CapacityPlanner base, int[] total, int[][] maximum) {
+        this.resources = base.resources;
+        this.total = total;
+        this.maximum = maximum;
+        this.allocation = base.allocation;
+        this.safetyChecks = base.safetyChecks;
+        BankerState state = restoreState();
+        this.safe = state.finishRestore();
+        this.sequence = safe ? Arrays.copyOf(state.safeSequence, state.sequenceLength) : null;
+        this.sequenceBound = safe ? sequenceBounds(state) : null;
+    }
+
+    // Se o estado analisado é seguro (pode deixar de ser depois de 'withMaximum')
+    boolean isSafe() {
+        return safe;
+    }
+
+    int getNumberOfSlots() {
+        return maximum.length;
+    }
+
+    /*
+     * Mesmo estado com 'delta' unidades a mais (ou a menos, se negativo) de cada recurso.
+     * Lança IllegalArgumentException se o disponível ficaria negativo.
+     */
+    CapacityPlanner withCapacity(int[] delta) {
+        if (delta.length != resources) throw new IllegalArgumentException("Vetor com quantidade de recursos incorreta");
+        int[] available = available();
+        int[] newTotal = total.clone();
+        for (int j = 0; j < resources; j++) {
+            if (available[j] + delta[j] < 0) throw new IllegalArgumentException("Disponível do recurso " + j + " ficaria negativo");
+            newTotal[j] += delta[j];
+        }
+        return new CapacityPlanner(this, newTotal, maximum);
+    }
+
+    /*
+     * Mesmo estado com outra demanda máxima para o cliente. Aumentar a demanda pode tornar o
+     * estado inseguro (ver isSafe). Lança IllegalArgumentException se o cliente não existir ou
+     * a nova demanda for menor que a alocação ou maior que o total.
+     */
+    CapacityPlanner withMaximum(int customerNum, int[] newMaximum) {
+        if (!isActive(customerNum)) throw new IllegalArgumentException("Cliente não registrado: " + customerNum);
+        if (newMaximum.length != resources) throw new IllegalArgumentException("Vetor com quantidade de recursos incorreta");
+        for (int j = 0; j < resources; j++) {
+            if (newMaximum[j] < allocation[customerNum][j] || newMaximum[j] > total[j]) {
+                throw new IllegalArgumentException("Demanda máxima inválida para o recurso " + j);
+            }
+        }
+        int[][] changed = maximum.clone(); // as linhas são compartilhadas; só a do cliente é trocada
+        changed[customerNum] = newMaximum.clone();
+        return new CapacityPlanner(this, total, changed);
+    }
+
+    /*
+     * O que o Banqueiro faria com a requisição agora: GRANTED se seria concedida na hora,
+     * senão o motivo (NOT_REGISTERED, INVALID, EXCEEDS_NEED, INSUFFICIENT ou UNSAFE). Nada é alterado.
+     * Cada chamada monta uma cópia do estado; para muitas perguntas use 'evaluateAll'.
+     */
+    RequestResult evaluate(int customerNum, int[] request) {
+        return evaluate(buildState(), customerNum, request);
+    }
+
+    private static RequestResult evaluate(BankerState state, int customerNum, int[] request) {
+        if (!state.isActive(customerNum)) return RequestResult.NOT_REGISTERED;
+        if (!state.isWellFormed(request)) return RequestResult.INVALID;
+        if (!state.fitsNeed(customerNum, request)) return RequestResult.EXCEEDS_NEED;
+        if (!state.fitsAvailable(request)) return RequestResult.INSUFFICIENT;
+        if (!state.tryGrant(customerNum, request)) return RequestResult.UNSAFE;
+        state.release(customerNum, request); // desfaz: a cópia volta ao estado base
+        return RequestResult.GRANTED;
+    }
+
+    /*
+     * Avalia um lote de requisições em paralelo, cada uma isoladamente a partir do estado base.
+     * Para saber quais passam a ser concedidas com mais capacidade, basta comparar o resultado
+     * com o de 'withCapacity(delta).evaluateAll(...)'.
+     */
+    RequestResult[] evaluateAll(int[] customers, int[][] requests) {
+        RequestResult[] results = new RequestResult[customers.length];
+        forEachParallel(customers.length, (state, k) -> results[k] = evaluate(state, customers[k], requests[k]));
+        return results;
+    }
+
+    /*
+     * Para cada recurso, o maior número de unidades que o cliente poderia receber agora (só
+     * desse recurso) mantendo o estado seguro. A segurança é monótona na quantidade concedida
+     * (conceder menos deixa mais trabalho disponível em toda a sequência segura), então cada
+     * recurso é uma busca binária até min(necessidade, disponível), a partir do limite dado pela
+     * sequência segura do estado base. Em geral esse limite já é a resposta e basta uma checagem
+     * (a de uma unidade a mais) por recurso; no pior caso são O(m log R).
+     *
+     * Os valores de recursos diferentes não são necessariamente concedíveis juntos. Devolve null
+     * se o cliente não existir e zeros se o estado base já for inseguro. Cada chamada monta uma
+     * cópia do estado; para todos os clientes use 'maxSafeGrants'.
+     */
+    int[] maxSafeGrant(int customerNum) {
+        return maxSafeGrant(buildState(), customerNum);
+    }
+
+    private int[] maxSafeGrant(BankerState state, int customerNum) {
+        if (!state.isActive(customerNum)) return null;
+        int[] result = new int[resources];
+        if (!safe) return result;
+
+        int[] request = new int[resources];
+        int row = customerNum * resources;
+        for (int j = 0; j < resources; j++) {
+            int high = Math.min(state.need[row + j], state.available[j]);
+            int low = Math.min(sequenceBound[row + j], high); // sempre seguro
+            boolean first = true;
+            while (low < high) {
+                // Primeiro testa uma unidade acima do limite, que quase sempre já é insegura
+                int middle = first ? low + 1 : low + (high - low + 1) / 2;
+                first = false;
+                request[j] = middle;
+                if (state.tryGrant(customerNum, request)) {
+                    state.release(customerNum, request);
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            request[j] = 0;
+            result[j] = low;
+        }
+        return result;
+    }
+
+    // maxSafeGrant de todos os slots, calculados em paralelo (null para slots sem cliente)
+    int[][] maxSafeGrants() {
+        int[][] results = new int[maximum.length][];
+        forEachParallel(maximum.length, (state, i) -> results[i] = maxSafeGrant(state, i));
+        return results;
+    }
+
+    /*
+     * Roda 'action' para cada índice de [0, count) em alguns pedaços paralelos. Cada pedaço
+     * monta a sua cópia do estado e a descarta no fim, então nada fica preso às threads do pool.
+     */
+    private void forEachParallel(int count, ObjIntConsumer<BankerState> action) {
+        int chunks = Math.min(count, CHUNKS_PER_THREAD * ForkJoinPool.getCommonPoolParallelism());
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            BankerState state = buildState();
+            int end = (int) ((long) count * (chunk + 1) / chunks);
+            for (int k = (int) ((long) count * chunk / chunks); k < end; k++) action.accept(state, k);
+        });
+    }
+
+    private boolean isActive(int customerNum) {
+        return customerNum >= 0 && customerNum < maximum.length && maximum[customerNum] != null;
+    }
+
+    private int[] available() {
+        int[] available = total.clone();
+        for (int[] row : allocation) {
+            if (row == null) continue;
+            for (int j = 0; j < resources; j++) available[j] -= row[j];
+        }
+        return available;
+    }
+
+    /*
+     * Conceder x unidades do recurso j ao cliente na posição p da sequência segura tira x do
+     * trabalho disponível só nas posições antes de p (a partir de p a alocação dele devolve o
+     * que recebeu). A sequência continua valendo, então, enquanto x não passar da menor folga
+     * work[j] - need[k][j] das posições anteriores: O(n m) para todos os clientes de uma vez.
+     */
+    private int[] sequenceBounds(BankerState state) {
+        int[] bounds = new int[maximum.length * resources];
+        int[] work = state.available.clone();
+        int[] slack = new int[resources];
+        Arrays.fill(slack, Integer.MAX_VALUE);
+        for (int k = 0; k < state.sequenceLength; k++) {
+            int row = state.safeSequence[k] * resources;
+            for (int j = 0; j < resources; j++) {
+                bounds[row + j] = slack[j];
+                slack[j] = Math.min(slack[j], work[j] - state.need[row + j]);
+                work[j] += state.allocation[row + j];
+            }
+        }
+        return bounds;
+    }
+
+    // Monta uma cópia do estado base para uma consulta; se ele é seguro, sem rodar a checagem
+    private BankerState buildState() {
+        BankerState state = restoreState();
+        if (safe) {
+            state.finishRestore(sequence, sequence.length);
+        } else {
+            state.finishRestore();
+        }
+        return state;
+    }
+
+    // Clientes nos mesmos slots, com as mesmas alocações (falta o finishRestore)
+    private BankerState restoreState() {
+        BankerState state = new BankerState(total, maximum.length, safetyChecks.get());
+        for (int i = 0; i < maximum.length; i++) {
+            if (maximum[i] != null) state.restore(i, maximum[i], allocation[i]);
+        }
+        return state;
+    }
+}
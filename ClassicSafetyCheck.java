@@ -0,0 +1,68 @@
+/*
+ * Checagem de segurança clássica: a cada cliente que termina, todos os clientes
+ * ainda não terminados são revisitados a partir do primeiro. Custo O(n² · m) no pior caso.
+ */
+class ClassicSafetyCheck implements SafetyCheck {
+    // Buffers de rascunho (reutilizados a cada chamada)
+    private int[] work = new int[0];
+    private boolean[] finish = new boolean[0];
+
+    @Override
+    public boolean isSafe(BankerState state) {
+        int customers = state.customers;
+        int resources = state.resources;
+        int[] need = state.need;
+        int[] allocation = state.allocation;
+        boolean[] active = state.active;
+        int[] sequence = state.safeSequence;
+        int length = 0;
+
+        if (work.length < resources) work = new int[resources];
+        if (finish.length < customers) finish = new boolean[customers];
+
+        // --- Algoritmo do Banqueiro (REQUISIÇÃO: Checagem de Segurança) ---
+
+        // ! Passo 1: Trabalho = Disponível e Término[i] = false
+        // (slots aposentados já começam terminados e nunca são revisitados)
+        System.arraycopy(state.available, 0, work, 0, resources);
+        int finished = 0;
+        for (int i = 0; i < customers; i++) {
+            finish[i] = !active[i];
+            if (finish[i]) finished++;
+        }
+
+        boolean validationFinished;
+        do {
+            validationFinished = false;
+
+            // ! Passo 2: Término[i] == false E Necessidade[i] <= Trabalho
+            for (int i = 0; i < customers; i++) {
+                if (finish[i]) continue;
+
+                int row = i * resources;
+                boolean validateWork = true;
+                for (int j = 0; j < resources; j++) {
+                    if (need[row + j] > work[j]) {
+                        validateWork = false;
+                        break;
+                    }
+                }
+
+                if (validateWork) {
+                    // ! Passo 3: Trabalho = Trabalho + Alocação e Término[i] = true
+                    for (int j = 0; j < resources; j++) {
+                        work[j] += allocation[row + j];
+                    }
+                    finish[i] = true;
+                    finished++;
+                    sequence[length++] = i;
+                    validationFinished = true;
+                }
+            }
+        } while (validationFinished);
+
+        // ! Passo 4: Término[i] == true para todo i, sistema é seguro
+        state.sequenceLength = length;
+        return finished == customers;
+    }
+}
@@ -0,0 +1,3 @@
+class Constants{
+    public static final int NUMBER_OF_CUSTOMERS = 5; // Total de clientes (padrão, ver --customers)
+}
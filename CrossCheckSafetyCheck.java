@@ -0,0 +1,31 @@
+/*
+ * Roda duas estratégias de checagem de segurança sobre o mesmo estado e falha
+ * se elas discordarem. Útil para validar uma estratégia nova contra a clássica.
+ */
+class CrossCheckSafetyCheck implements SafetyCheck {
+    private final SafetyCheck reference;
+    private final SafetyCheck candidate;
+
+    CrossCheckSafetyCheck(SafetyCheck reference, SafetyCheck candidate) {
+        this.reference = reference;
+        this.candidate = candidate;
+    }
+
+    @Override
+    public boolean isSafe(BankerState state) {
+        boolean expected = reference.isSafe(state);
+        boolean actual = candidate.isSafe(state);
+        if (expected != actual) {
+            throw new IllegalStateException("Checagens de segurança divergiram: "
+                    + reference.getClass().getSimpleName() + "=" + expected + ", "
+                    + candidate.getClass().getSimpleName() + "=" + actual);
+        }
+        return expected;
+    }
+
+    @Override
+    public void rowChanged(BankerState state, int customer) {
+        reference.rowChanged(state, customer);
+        candidate.rowChanged(state, customer);
+    }
+}
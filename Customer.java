@@ -1,26 +1,44 @@
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 class Customer implements Runnable {
     private int customerId;
     private Banker banker;
-    private ThreadLocalRandom random = ThreadLocalRandom.current(); // Gerador aleatório seguro para threads
+    private int resources; // Quantidade de tipos de recursos do Banqueiro
+    private LoadConfig config; // Tempos de uso/pausa e taxa alvo
+    private LoadDriver driver; // Controle de execução e contadores (null = roda para sempre)
 
     public Customer(int id, Banker banker) {
+        this(id, banker, new LoadConfig(), null);
+    }
+
+    public Customer(int id, Banker banker, LoadConfig config, LoadDriver driver) {
         this.customerId = id;
         this.banker = banker;
+        this.resources = banker.getNumberOfResources();
+        this.config = config;
+        this.driver = driver;
     }
 
-    //? Codigo que será executado pelo Customer(thread) continuamente 
+    //? Codigo que será executado pelo Customer(thread) enquanto a simulação estiver rodando
     @Override
     public void run() {
-        System.out.println("Cliente " + customerId + " thread iniciada.");
+        // Os eventos do cliente vão para o mesmo registro do Banqueiro
+        EventLog log = banker.getEventLog();
+        log.log(EventLog.Event.CUSTOMER_STARTED, customerId);
+
+        // Gerador aleatório seguro para threads (precisa ser obtido na própria thread do cliente)
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long pacingNanos = config.pacingNanos();
+
+        while (driver == null || driver.isRunning()) {
+            long cycleStart = System.nanoTime();
 
-        while (true) {
             //! --- Simular Requisição de Recursos ---
-            int[] request = new int[Constants.NUMBER_OF_RESOURCES];
+            int[] request = new int[resources];
             boolean madeRequest = false;
             //* Gera uma requisição aleatória com o maximo sendo a necessidade do Customer
-            for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
+            for (int i = 0; i < resources; i++) {
                 // Getter seguro para descobrir o need atual do Customer
                 int currentNeed = banker.getNeedValue(customerId, i);
                 if (currentNeed > 0) {
@@ -35,27 +53,31 @@ class Customer implements Runnable {
 
             if (madeRequest) {
                 // Chamada ao metodo para requisitar recursos do Banqueiro(banker)
-                int result = banker.requestResources(customerId, request);
+                if (driver != null) driver.requests.increment();
+                int result = config.requestTimeoutMillis > 0
+                        ? banker.requestResources(customerId, request, config.requestTimeoutMillis, TimeUnit.MILLISECONDS).toCode()
+                        : banker.requestResources(customerId, request);
 
                 if (result == 0) { // Se tivermos retorno 0 a requisição foi um sucesso
-                    // Simular uso dos recursos por um tempo 1000-2000 ms
-                    System.out.println("Cliente " + customerId + ": Usando recursos...");
+                    if (driver != null) driver.grants.increment();
+                    // Simular uso dos recursos por um tempo (1000-2000 ms na configuração padrão)
+                    log.log(EventLog.Event.CUSTOMER_USING, customerId);
                     try {
-                        Thread.sleep(random.nextInt(1000) + 1000);
+                        Thread.sleep(LoadConfig.sample(config.holdMillis, config.holdDistribution, random));
                     } catch (InterruptedException e) {
-                        System.out.println("Cliente " + customerId + " interrompido enquanto usava recursos.");
+                        log.log(EventLog.Event.CUSTOMER_INTERRUPTED, customerId);
                         Thread.currentThread().interrupt();
                         return; // Termina a thread se for interrompida durante o sleep
                     }
 
                     //! --- Simular Liberação de Recursos ---
-                    int[] release = new int[Constants.NUMBER_OF_RESOURCES];
+                    int[] release = new int[resources];
                     //Variavel que verifica se a liberação é valida
                     boolean madeRelease = false;
                     // Getter para saber quantos recursos está alocado (em uso) ao Customer
                     int[] currentAllocation = banker.getAllocationRow(customerId); 
 
-                    for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
+                    for (int i = 0; i < resources; i++) {
                         if (currentAllocation[i] > 0) {
                             // Cria vetor de liberação de recuros com valores entre 0 e alocado(inclusive)
                             release[i] = random.nextInt(currentAllocation[i]) + 1; 
@@ -70,9 +92,12 @@ class Customer implements Runnable {
                     if (madeRelease) {
                         // Chamar o método de liberação de recursos do banqueiro
                         banker.releaseResources(customerId, release);
+                        if (driver != null) driver.releases.increment();
                     }
 
-                } // se result == -1, a thread esperou e o loop vai tentar novamente
+                } else if (Thread.currentThread().isInterrupted()) {
+                    return; // Interrompido enquanto esperava (ex.: fim da simulação)
+                } // se result == -1 por outro motivo (ex.: prazo esgotado), o loop vai tentar novamente
                 
                 
                 /*
@@ -83,7 +108,7 @@ class Customer implements Runnable {
                 */
                 boolean noNeeds = true;
 
-                for (int i = 0; i < Constants.NUMBER_OF_RESOURCES; i++) {
+                for (int i = 0; i < resources; i++) {
                     if (banker.getNeedValue(customerId, i) > 0) {
                         noNeeds = false;
                         break;
@@ -92,20 +117,29 @@ class Customer implements Runnable {
 
                 if (noNeeds) {
                     banker.releaseResources(customerId, banker.getAllocationRow(customerId));
-                    System.out.println("Cliente " + customerId + " utilizou todas os recursos necessários!!!.");
+                    log.log(EventLog.Event.CUSTOMER_DONE, customerId);
                 }
 
             } else { // Se não fez requisição (random foi 0)
                 try {
-                    Thread.sleep(50); // Pequena pausa
+                    Thread.sleep(LoadConfig.sample(config.thinkMillis, config.thinkDistribution, random)); // Pequena pausa
                 } catch (InterruptedException e) {
-                    System.out.println("Cliente " + customerId + " interrompido em pausa.");
+                    log.log(EventLog.Event.CUSTOMER_INTERRUPTED_PAUSE, customerId);
                     Thread.currentThread().interrupt();
                     return;
                 }
             }
 
-           
-        } // Fim do loop while(true)
+            // Respeita a taxa alvo: cada cliente espera o intervalo mínimo entre suas requisições
+            long remaining = pacingNanos - (System.nanoTime() - cycleStart);
+            if (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } // Fim do loop while
     }
 }
\ No newline at end of file
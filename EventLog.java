@@ -0,0 +1,210 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Registro de eventos do Banqueiro (e dos clientes) com níveis e escrita assíncrona.
+ *
+ * Quem registra um evento não formata nada nem toca na saída: apenas copia o tipo do evento,
+ * os números e o vetor para uma posição de um buffer circular pré-alocado, reservada sem trava
+ * (compare-and-set). Uma thread de fundo esvazia o buffer, formata as mensagens e escreve na saída.
+ * Se o buffer estiver cheio o evento é descartado e contado, nunca bloqueando quem registra.
+ *
+ * Com o nível OFF (padrão do Banqueiro) registrar um evento custa só uma comparação.
+ */
+class EventLog {
+    enum Level { OFF, ERROR, INFO, DEBUG }
+
+    // Tipos de evento com seu nível e o modelo da mensagem (%1 e %2 são números, %v o vetor)
+    enum Event {
+        NOT_REGISTERED(Level.ERROR, "Cliente %1: Erro! Cliente não registrado."),
+        EXCEEDS_NEED(Level.ERROR, "Cliente %1: Erro! Requisição excede a necessidade máxima."),
+        EXCEEDS_ALLOCATION(Level.ERROR, "Cliente %1: Erro! Tentando liberar mais recursos do que alocado."),
+        MALFORMED(Level.ERROR, "Cliente %1: Erro! Vetor com quantidade de recursos errada ou valor negativo: %v"),
+        EXCEEDS_TOTAL(Level.ERROR, "Erro! Demanda máxima excede o total de recursos: %v"),
+        INVALID_ASYNC(Level.ERROR, "Cliente %1: Erro! Requisição assíncrona inválida: %v"),
+        REQUEST(Level.DEBUG, "Cliente %1 solicitando: %v"),
+        INSUFFICIENT(Level.INFO, "Cliente %1: Recursos insuficientes disponíveis. Esperando..."),
+        UNSAFE(Level.INFO, "Cliente %1: Requisição negada (levaria a estado inseguro). Esperando..."),
+        RESERVED(Level.INFO, "Cliente %1: Recursos reservados para uma requisição mais antiga. Esperando..."),
+        GRANTED(Level.INFO, "Cliente %1: Requisição concedida. Agora disponíveis: %v"),
+        GRANTED_AFTER_WAIT(Level.INFO, "Cliente %1: Requisição concedida após espera. Agora disponíveis: %v"),
+        INTERRUPTED(Level.INFO, "Cliente %1 interrompido enquanto esperava."),
+        TIMED_OUT(Level.INFO, "Cliente %1: Prazo da requisição esgotado enquanto esperava."),
+        TRY_REJECTED(Level.INFO, "Cliente %1: Requisição sem espera recusada (não pode ser atendida agora)."),
+        CANCELLED(Level.INFO, "Cliente %1: Requisição cancelada enquanto esperava."),
+        RELEASE(Level.DEBUG, "Cliente %1 liberando: %v"),
+        RELEASED(Level.INFO, "Cliente %1: Recursos liberados. Agora disponíveis: %v"),
+        DEREGISTERED(Level.INFO, "Cliente %1: Removido. Agora disponíveis: %v"),
+        BATCH(Level.INFO, "Lote processado: %1 liberações, %2 requisições. Agora disponíveis: %v"),
+        CUSTOMER_STARTED(Level.DEBUG, "Cliente %1 thread iniciada."),
+        CUSTOMER_USING(Level.DEBUG, "Cliente %1: Usando recursos..."),
+        CUSTOMER_INTERRUPTED(Level.INFO, "Cliente %1 interrompido enquanto usava recursos."),
+        CUSTOMER_INTERRUPTED_PAUSE(Level.INFO, "Cliente %1 interrompido em pausa."),
+        CUSTOMER_DONE(Level.INFO, "Cliente %1 utilizou todas os recursos necessários!!!.");
+
+        final Level level;
+        final String template;
+
+        Event(Level level, String template) {
+            this.level = level;
+            this.template = template;
+        }
+    }
+
+    // Registro desligado, sem buffer nem thread de fundo
+    static final EventLog DISABLED = new EventLog();
+
+    private final Level level;
+    private final PrintStream out;
+
+    // Buffer circular: a posição 'sequência & mask' guarda o evento daquela sequência
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLongArray published;   // sequência publicada em cada posição
+    private final AtomicLong tail = new AtomicLong(); // próxima sequência a reservar
+    private volatile long head;                  // próxima sequência a escrever
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean running;
+
+    private EventLog() {
+        this.level = Level.OFF;
+        this.out = null;
+        this.slots = new Slot[0];
+        this.mask = 0;
+        this.published = new AtomicLongArray(0);
+        this.writer = null;
+    }
+
+    // 'capacity' é arredondada para a próxima potência de 2
+    EventLog(Level level, PrintStream out, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.level = level;
+        this.out = out;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int k = 0; k < size; k++) {
+            slots[k] = new Slot();
+            published.set(k, -1);
+        }
+
+        this.running = true;
+        this.writer = new Thread(this::drainLoop, "banker-event-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    boolean isEnabled(Event event) {
+        return event.level.ordinal() <= level.ordinal();
+    }
+
+    void log(Event event, int customer) {
+        if (isEnabled(event)) publish(event, customer, 0, null);
+    }
+
+    void log(Event event, int customer, int[] vector) {
+        if (isEnabled(event)) publish(event, customer, 0, vector);
+    }
+
+    void log(Event event, int first, int second, int[] vector) {
+        if (isEnabled(event)) publish(event, first, second, vector);
+    }
+
+    // Quantidade de eventos descartados por buffer cheio
+    long dropped() {
+        return dropped.sum();
+    }
+
+    // Escreve os eventos pendentes e encerra a thread de fundo
+    void close() throws InterruptedException {
+        if (writer == null) return;
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    private void publish(Event event, int first, int second, int[] vector) {
+        // Reserva uma sequência sem trava; se o buffer estiver cheio, descarta
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.event = event;
+        slot.first = first;
+        slot.second = second;
+        if (vector == null) {
+            slot.length = -1;
+        } else {
+            if (slot.vector.length < vector.length) slot.vector = new int[vector.length];
+            System.arraycopy(vector, 0, slot.vector, 0, vector.length);
+            slot.length = vector.length;
+        }
+        published.lazySet((int) (sequence & mask), sequence);
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            boolean stopping = !running;
+            long position = head;
+            int written = 0;
+
+            // Escreve em ordem enquanto a próxima sequência já estiver publicada
+            while (published.get((int) (position & mask)) == position) {
+                Slot slot = slots[(int) (position & mask)];
+                format(slot, line);
+                out.println(line);
+                line.setLength(0);
+                position++;
+                head = position; // libera a posição para ser reaproveitada
+                written++;
+            }
+
+            if (written > 0) {
+                out.flush();
+            } else if (stopping && position == tail.get()) {
+                return;
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private static void format(Slot slot, StringBuilder line) {
+        String template = slot.event.template;
+        for (int k = 0; k < template.length(); k++) {
+            char c = template.charAt(k);
+            if (c == '%' && k + 1 < template.length()) {
+                char field = template.charAt(++k);
+                if (field == '1') line.append(slot.first);
+                else if (field == '2') line.append(slot.second);
+                else if (field == 'v') line.append(slot.length < 0 ? "[]" : Arrays.toString(Arrays.copyOf(slot.vector, slot.length)));
+                else line.append(c).append(field);
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    // Posição do buffer circular (reutilizada; só é escrita por quem reservou a sequência)
+    private static class Slot {
+        Event event;
+        int first;
+        int second;
+        int[] vector = new int[8];
+        int length;
+    }
+}
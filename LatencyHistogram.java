@@ -0,0 +1,98 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Histograma de latências (em nanossegundos) com baldes log-lineares, no estilo HDR:
+ * cada potência de 2 é dividida em 16 baldes, então o erro relativo de um percentil é
+ * de no máximo ~6%, com memória fixa e gravação O(1) sem alocação e sem trava.
+ *
+ * Os contadores são listrados como num LongAdder: há uma cópia dos baldes (~8 KB) por listra,
+ * até uma por processador (no máximo 8), e cada thread grava sempre na mesma listra. Threads
+ * gravando ao mesmo tempo quase nunca disputam a mesma linha de cache; o snapshot soma as listras.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // Potência de 2 para escolher a listra com uma máscara
+    private static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    LatencyHistogram() {
+        for (int s = 0; s < STRIPES; s++) stripes[s] = new AtomicLongArray(BUCKETS);
+    }
+
+    void record(long nanos) {
+        stripe().incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    // Listra da thread atual: fixa por thread, espalhada pelo hash de identidade
+    private AtomicLongArray stripe() {
+        int hash = System.identityHashCode(Thread.currentThread());
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Cópia dos contadores para calcular percentis sem interferir em quem grava
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (AtomicLongArray counts : stripes) {
+            for (int k = 0; k < BUCKETS; k++) copy[k] += counts.get(k);
+        }
+        return new Snapshot(copy);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Maior valor que cai no balde (usado como estimativa conservadora do percentil); o limite
+    // dos baldes do topo passaria de 64 bits, então fica em Long.MAX_VALUE
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long next = SUB_BUCKETS + index % SUB_BUCKETS + 1;
+        if (Long.numberOfLeadingZeros(next) <= shift) return Long.MAX_VALUE;
+        return (next << shift) - 1;
+    }
+
+    static class Snapshot {
+        private final long[] counts;
+        final long count;
+        final long max;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            int last = -1;
+            for (int k = 0; k < counts.length; k++) {
+                total += counts[k];
+                if (counts[k] > 0) last = k;
+            }
+            this.count = total;
+            this.max = last < 0 ? 0 : upperBoundOf(last);
+        }
+
+        // Valor (ns) abaixo do qual está a fração 'quantile' das amostras
+        long percentile(double quantile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int k = 0; k < counts.length; k++) {
+                seen += counts[k];
+                if (seen >= rank) return upperBoundOf(k);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                    count, percentile(0.50) / 1e3, percentile(0.99) / 1e3, percentile(0.999) / 1e3, max / 1e3);
+        }
+    }
+}
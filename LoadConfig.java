@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Parâmetros de uma execução do LoadDriver.
+ *
+ * Os parâmetros vêm da linha de comando no formato '--nome=valor' (ver parse), e os
+ * argumentos restantes são as quantidades disponíveis de cada recurso, como no TP1 original.
+ * Tempos são em milissegundos; a duração é em segundos (0 = roda até ser interrompido).
+ */
+class LoadConfig {
+    // Distribuições possíveis para os tempos de "pensar" e de "usar" os recursos
+    enum Distribution { FIXED, UNIFORM, EXPONENTIAL }
+
+    int customers = Constants.NUMBER_OF_CUSTOMERS;
+    int[] available = new int[0];
+
+    // Pausa entre tentativas quando o cliente não tem o que pedir (média)
+    long thinkMillis = 50;
+    Distribution thinkDistribution = Distribution.FIXED;
+
+    // Tempo usando os recursos concedidos antes de liberar (média)
+    long holdMillis = 1500;
+    Distribution holdDistribution = Distribution.UNIFORM;
+
+    // Prazo de cada requisição: depois dele o cliente desiste e tenta de novo (0 = espera sem limite)
+    long requestTimeoutMillis = 0;
+
+    // Duração total da execução em segundos (0 = sem limite)
+    long durationSeconds = 0;
+
+    // Taxa alvo de requisições por segundo somando todos os clientes (0 = sem limite)
+    double targetRate = 0;
+
+    // "virtual", "platform" ou o tamanho de um pool fixo de threads
+    String executor = "virtual";
+
+    // Imprime a matriz de demandas máximas geradas (apenas para poucos clientes)
+    boolean printMaxNeeds = true;
+
+    // Nível do registro de eventos (padrão: DEBUG com poucos clientes, OFF com muitos)
+    EventLog.Level logLevel;
+
+    // Ordem de avaliação da fila de espera, passo do envelhecimento (AGING) e quantidade de classes
+    // de prioridade entre as quais os clientes são distribuídos (cliente i fica na classe i % classes)
+    AdmissionPolicy admissionPolicy = AdmissionPolicy.FIFO;
+    long agingMillis = 100;
+    int priorityClasses = 1;
+
+    // Diretório do journal do Banqueiro (null = estado só em memória)
+    String journalDirectory;
+
+    // Arquivo em que as operações são gravadas para reprodução (null = não grava; ver TraceReplay)
+    String traceFile;
+
+    static LoadConfig parse(String[] args) {
+        LoadConfig config = new LoadConfig();
+        int[] available = new int[args.length];
+        int resources = 0;
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                available[resources] = Integer.parseInt(arg);
+                if (available[resources] < 0)
+                    throw new NumberFormatException("Recurso Disponível não pode ser negativo.");
+                resources++;
+                continue;
+            }
+
+            int separator = arg.indexOf('=');
+            if (separator < 0) throw new IllegalArgumentException("Parâmetro sem valor: " + arg);
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+
+            switch (name) {
+                case "customers": config.customers = Integer.parseInt(value); break;
+                case "think": config.thinkMillis = Long.parseLong(value); break;
+                case "think-distribution": config.thinkDistribution = Distribution.valueOf(value.toUpperCase()); break;
+                case "hold": config.holdMillis = Long.parseLong(value); break;
+                case "hold-distribution": config.holdDistribution = Distribution.valueOf(value.toUpperCase()); break;
+                case "duration": config.durationSeconds = Long.parseLong(value); break;
+                case "timeout": config.requestTimeoutMillis = Long.parseLong(value); break;
+                case "rate": config.targetRate = Double.parseDouble(value); break;
+                case "executor": config.executor = value; break;
+                case "log": config.logLevel = EventLog.Level.valueOf(value.toUpperCase()); break;
+                case "policy": config.admissionPolicy = AdmissionPolicy.parse(value); break;
+                case "aging": config.agingMillis = Long.parseLong(value); break;
+                case "priorities": config.priorityClasses = Integer.parseInt(value); break;
+                case "journal": config.journalDirectory = value; break;
+                case "trace": config.traceFile = value; break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + arg);
+            }
+        }
+
+        if (resources == 0) throw new IllegalArgumentException("Quantidade inicial de parâmetros de recursos incorreta");
+        if (config.customers <= 0) throw new IllegalArgumentException("Quantidade de clientes deve ser positiva.");
+        if (config.agingMillis <= 0) throw new IllegalArgumentException("Intervalo de envelhecimento deve ser positivo.");
+        if (config.priorityClasses <= 0) throw new IllegalArgumentException("Quantidade de classes de prioridade deve ser positiva.");
+        config.available = Arrays.copyOf(available, resources);
+        config.printMaxNeeds = config.customers <= 20;
+        if (config.logLevel == null) config.logLevel = config.printMaxNeeds ? EventLog.Level.DEBUG : EventLog.Level.OFF;
+        return config;
+    }
+
+    // Intervalo mínimo entre requisições de um mesmo cliente para atingir a taxa alvo
+    long pacingNanos() {
+        return targetRate > 0 ? (long) (1_000_000_000L * customers / targetRate) : 0;
+    }
+
+    // Sorteia um tempo (ms) com a média e a distribuição informadas
+    static long sample(long meanMillis, Distribution distribution, ThreadLocalRandom random) {
+        if (meanMillis <= 0) return 0;
+        switch (distribution) {
+            case UNIFORM:
+                // Até um terço acima ou abaixo da média (1000-2000 ms para a média padrão de 1500 ms)
+                long spread = meanMillis / 3;
+                return meanMillis - spread + random.nextLong(2 * spread + 1);
+            case EXPONENTIAL:
+                return (long) (-meanMillis * Math.log(1.0 - random.nextDouble()));
+            default:
+                return meanMillis;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+
+/*
+ * Executa uma simulação de clientes contra um Banqueiro a partir de um LoadConfig.
+ *
+ * Cada cliente é uma tarefa (Customer) submetida a um executor configurável: por padrão uma
+ * thread virtual por cliente, o que permite simular centenas de milhares de clientes numa
+ * única máquina. Ao fim da duração os clientes são interrompidos, o executor é encerrado e
+ * um resumo com a vazão alcançada é impresso.
+ */
+class LoadDriver {
+    private final LoadConfig config;
+    private final Banker banker;
+    private final BankerJournal journal;
+    private final TraceRecorder trace;
+    private final int[][] maxNeeds;
+
+    // Slot do Banqueiro de cada cliente da simulação (-1 = não foi registrado)
+    private final int[] slots;
+
+    // Controle de execução lido pelos clientes a cada ciclo
+    private volatile boolean running = true;
+
+    // Contadores agregados de todos os clientes
+    final LongAdder requests = new LongAdder();
+    final LongAdder grants = new LongAdder();
+    final LongAdder releases = new LongAdder();
+
+    LoadDriver(LoadConfig config) throws IOException {
+        this.config = config;
+        if (config.journalDirectory == null) {
+            this.journal = null;
+            this.banker = new Banker(config.available, config.customers, new ParallelSafetyCheck(new ClassicSafetyCheck()));
+        } else {
+            this.journal = BankerJournal.open(Paths.get(config.journalDirectory));
+            if (journal.hasState() && journal.recoveredTotal().length != config.available.length) {
+                throw new IOException("O journal em " + config.journalDirectory + " tem " + journal.recoveredTotal().length
+                        + " recursos, mas foram passados " + config.available.length + " na linha de comando.");
+            }
+            this.banker = new Banker(config.available, config.customers, new ParallelSafetyCheck(new ClassicSafetyCheck()), journal);
+        }
+        banker.setAdmissionPolicy(config.admissionPolicy, config.agingMillis);
+        try {
+            banker.getMetrics().registerMBean("load-driver");
+        } catch (JMException e) {
+            System.err.println("Não foi possível registrar as métricas no JMX: " + e);
+        }
+        if (config.logLevel != null && config.logLevel != EventLog.Level.OFF) {
+            banker.setEventLog(new EventLog(config.logLevel, System.out, 1 << 16));
+        }
+        this.maxNeeds = new int[config.customers][config.available.length];
+        this.slots = new int[config.customers];
+
+        // A gravação começa antes dos registros, assim o trace contém os clientes desde o início
+        if (config.traceFile != null) {
+            this.trace = new TraceRecorder(Paths.get(config.traceFile));
+            banker.setTraceRecorder(trace);
+        } else {
+            this.trace = null;
+        }
+
+        // Clientes recuperados do journal continuam com a mesma demanda máxima (alocação + necessidade).
+        // Podem estar em quaisquer slots (os de clientes removidos ficam vagos); os que passam de
+        // --customers são removidos, senão ficariam com a alocação sem ninguém para devolvê-la
+        BankerSnapshot recovered = banker.snapshot();
+        int resumed = 0;
+        int dropped = 0;
+        for (int slot = 0; slot < recovered.getNumberOfSlots(); slot++) {
+            if (!recovered.isActive(slot)) continue;
+            if (resumed == config.customers) {
+                banker.deregisterCustomer(slot);
+                dropped++;
+                continue;
+            }
+            int[] allocation = recovered.getAllocationRow(slot);
+            int[] need = recovered.getNeedRow(slot);
+            for (int j = 0; j < config.available.length; j++) maxNeeds[resumed][j] = allocation[j] + need[j];
+            banker.setPriority(slot, resumed % config.priorityClasses);
+            slots[resumed] = slot;
+            resumed++;
+        }
+        if (resumed > 0) System.out.println("Journal: " + resumed + " clientes recuperados.");
+        if (dropped > 0) System.out.println("Journal: " + dropped + " clientes recuperados além de --customers foram removidos.");
+
+        // Demandas máximas aleatórias, sempre menores do que o disponível de cada recurso
+        Random random = new Random();
+        for (int i = resumed; i < config.customers; i++) {
+            for (int j = 0; j < config.available.length; j++) {
+                maxNeeds[i][j] = config.available[j] != 0 ? random.nextInt(0, config.available[j]) : 0;
+            }
+            slots[i] = banker.registerCustomer(maxNeeds[i], i % config.priorityClasses);
+            if (slots[i] < 0) {
+                System.err.println("Cliente " + i + " não registrado: demanda máxima inválida para o Banqueiro.");
+            }
+        }
+    }
+
+    Banker getBanker() {
+        return banker;
+    }
+
+    LoadConfig getConfig() {
+        return config;
+    }
+
+    int[][] getMaxNeeds() {
+        return maxNeeds;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    // Roda a simulação até o fim da duração (ou para sempre, se a duração for 0)
+    void run() throws InterruptedException {
+        ExecutorService executor = createExecutor(config.executor);
+        System.out.println("\nMain Thread: Criando " + config.customers + " clientes (executor: " + config.executor + ")...");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < config.customers; i++) {
+            if (slots[i] >= 0) executor.execute(new Customer(slots[i], banker, config, this));
+        }
+
+        try {
+            if (config.durationSeconds > 0) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds));
+            } else {
+                // Sem duração: espera até a thread principal ser interrompida
+                new CountDownLatch(1).await();
+            }
+        } finally {
+            stop(executor);
+            banker.getEventLog().close(); // escreve os eventos que ainda estavam no buffer
+            closeJournal();
+            closeTrace();
+            report(System.nanoTime() - start);
+        }
+    }
+
+    // Sinaliza os clientes para pararem, interrompe os que estão esperando e aguarda todos
+    private void stop(ExecutorService executor) throws InterruptedException {
+        running = false;
+        executor.shutdownNow();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.err.println("Main Thread: Alguns clientes não terminaram a tempo.");
+        }
+    }
+
+    private void closeJournal() throws InterruptedException {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Falha ao gravar o journal: " + e);
+        }
+    }
+
+    private void closeTrace() {
+        if (trace == null) return;
+        banker.setTraceRecorder(null);
+        try {
+            trace.close();
+            System.out.println("Trace: " + trace.events() + " eventos gravados em " + config.traceFile);
+        } catch (IOException e) {
+            System.err.println("Falha ao gravar o trace: " + e);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("\n--- Resumo da Execução ---");
+        System.out.println("Clientes: " + config.customers + ", duração: " + String.format("%.1f s", seconds));
+        System.out.println("Política de admissão: " + config.admissionPolicy
+                + (config.priorityClasses > 1 ? ", " + config.priorityClasses + " classes de prioridade" : ""));
+        System.out.println("Requisições: " + requests.sum() + " (" + String.format("%.0f/s", requests.sum() / seconds) + ")");
+        System.out.println("Concessões: " + grants.sum() + " (" + String.format("%.0f/s", grants.sum() / seconds) + ")");
+        System.out.println("Liberações: " + releases.sum());
+        System.out.println(banker.getMetrics().snapshot());
+        if (banker.getEventLog().dropped() > 0) {
+            System.out.println("Eventos descartados (registro cheio): " + banker.getEventLog().dropped());
+        }
+        System.out.println("--------------------------");
+    }
+
+    /*
+     * "virtual" usa uma thread virtual por cliente (JDK 21+; em JDKs sem suporte cai para
+     * threads de plataforma), "platform" uma thread de plataforma por cliente e um número
+     * usa um pool fixo desse tamanho (com menos threads do que clientes, só os primeiros
+     * clientes rodam, já que cada cliente ocupa sua thread até o fim da execução).
+     */
+    static ExecutorService createExecutor(String kind) {
+        if (kind.equals("virtual")) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                System.err.println("Threads virtuais indisponíveis neste JDK, usando threads de plataforma.");
+                return Executors.newCachedThreadPool();
+            }
+        }
+        if (kind.equals("platform")) return Executors.newCachedThreadPool();
+        return Executors.newFixedThreadPool(Integer.parseInt(kind));
+    }
+}
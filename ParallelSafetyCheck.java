@@ -0,0 +1,217 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Checagem de segurança paralela, em rodadas, para estados com muitos clientes.
+ *
+ * Em cada rodada todos os clientes ainda não terminados são testados contra o mesmo 'work'
+ * (o da rodada), em pedaços processados em paralelo num ForkJoinPool. Todos os que cabem
+ * podem terminar, em qualquer ordem, porque terminar um cliente só faz 'work' crescer; então
+ * a rodada termina todos eles de uma vez, soma suas alocações ao 'work' e guarda apenas os
+ * restantes (compactados) para a próxima rodada. O estado é seguro quando não sobra ninguém
+ * e inseguro quando uma rodada não termina nenhum cliente.
+ *
+ * Cada pedaço escreve só na sua faixa dos buffers e soma as alocações numa cópia própria do
+ * 'work', então as tarefas não compartilham nada mutável; a junção das faixas entre rodadas
+ * é sequencial e custa O(n + pedaços · m). Dentro do pedaço o teste usa essa cópia, que já
+ * inclui o que o próprio pedaço terminou (como a versão clássica faz numa passada), o que reduz
+ * o número de rodadas; a sequência continua válida porque os pedaços anteriores só somam
+ * mais trabalho.
+ *
+ * Abaixo de 'threshold' (clientes ativos x recursos) a divisão não compensa e a checagem
+ * é delegada para a estratégia sequencial (a clássica, no TP1 e no servidor), então a troca
+ * acontece automaticamente.
+ *
+ * As rodadas fazem mais trabalho que a passada clássica (cada rodada retesta os restantes e
+ * compacta os buffers), então só ganham quando há workers para dividir. Com um worker só não
+ * há ganho em tamanho nenhum: no BankerBenchmark de uma máquina de 1 CPU a paralela ficou em
+ * 0,87x da clássica com 10 mil clientes x 32 recursos (cenário decide) e em 0,6x com 50 mil x 32.
+ * Por isso, sem limite explícito, um pool de paralelismo 1 nunca divide. Com mais workers o
+ * limite padrão é 2^18: com 32 recursos são 8 mil clientes, 4 pedaços de CHUNK, o mínimo para
+ * ocupar 4 workers na primeira rodada; abaixo disso o fork/join de cada rodada pesa mais que a
+ * divisão. Esse valor não foi medido em máquina com vários núcleos; para recalibrar, compare
+ * --engine=classic,parallel no BankerBenchmark e passe o limite no construtor.
+ */
+class ParallelSafetyCheck implements SafetyCheck {
+    // Tamanho a partir do qual vale dividir quando o pool tem mais de um worker (ver acima)
+    static final int DEFAULT_THRESHOLD = 1 << 18;
+
+    // Clientes por pedaço de uma rodada
+    private static final int CHUNK = 2048;
+
+    private final SafetyCheck sequential;
+    private final int threshold;
+    private final ForkJoinPool pool;
+
+    // Buffers de rascunho (reutilizados a cada chamada)
+    private int[] work = new int[0];
+    private int[] remaining = new int[0];   // clientes não terminados, por faixa de pedaço
+    private int[] finished = new int[0];    // clientes terminados na rodada, por faixa de pedaço
+    private int[] kept = new int[0];        // quantos restaram em cada pedaço
+    private int[] done = new int[0];        // quantos terminaram em cada pedaço
+    private int[] chunkWork = new int[0];   // 'work' da rodada mais as alocações terminadas em cada pedaço
+    private int[] roundWork = new int[0];   // 'work' no início da rodada
+
+    // Parâmetros da rodada atual, lidos pelas tarefas (publicados por pool.invoke)
+    private BankerState state;
+    private int roundSize;
+
+    ParallelSafetyCheck(SafetyCheck sequential) {
+        this(sequential, defaultThreshold(ForkJoinPool.commonPool()), ForkJoinPool.commonPool());
+    }
+
+    ParallelSafetyCheck(SafetyCheck sequential, int threshold) {
+        this(sequential, threshold, ForkJoinPool.commonPool());
+    }
+
+    ParallelSafetyCheck(SafetyCheck sequential, int threshold, ForkJoinPool pool) {
+        this.sequential = sequential;
+        this.threshold = threshold;
+        this.pool = pool;
+    }
+
+    // Limite padrão para o pool: com um worker só, dividir nunca compensa
+    static int defaultThreshold(ForkJoinPool pool) {
+        return pool.getParallelism() > 1 ? DEFAULT_THRESHOLD : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void rowChanged(BankerState state, int customer) {
+        sequential.rowChanged(state, customer);
+    }
+
+    @Override
+    public boolean isSafe(BankerState state) {
+        if ((long) state.activeCustomers * state.resources < threshold) return sequential.isSafe(state);
+
+        int customers = state.customers;
+        int resources = state.resources;
+        int[] sequence = state.safeSequence;
+        int length = 0;
+
+        ensureCapacity(customers, resources);
+
+        // ! Passo 1: Trabalho = Disponível; apenas clientes ativos precisam terminar
+        System.arraycopy(state.available, 0, work, 0, resources);
+        int count = 0;
+        for (int i = 0; i < customers; i++) {
+            if (state.active[i]) remaining[count++] = i;
+        }
+
+        this.state = state;
+        try {
+            while (count > 0) {
+                // ! Passos 2 e 3 para todos os clientes que cabem no trabalho desta rodada
+                roundSize = count;
+                int chunks = (count + CHUNK - 1) / CHUNK;
+                Round round = new Round(0, chunks);
+                if (chunks == 1) {
+                    round.compute();
+                } else {
+                    pool.invoke(round);
+                }
+
+                // Junta as faixas: sequência segura, trabalho e clientes restantes compactados
+                System.arraycopy(work, 0, roundWork, 0, resources);
+                int left = 0;
+                for (int c = 0; c < chunks; c++) {
+                    int from = c * CHUNK;
+                    System.arraycopy(finished, from, sequence, length, done[c]);
+                    length += done[c];
+                    if (done[c] > 0) {
+                        int offset = c * resources;
+                        for (int j = 0; j < resources; j++) work[j] += chunkWork[offset + j] - roundWork[j];
+                    }
+                    System.arraycopy(remaining, from, remaining, left, kept[c]);
+                    left += kept[c];
+                }
+
+                if (left == count) break; // nenhum cliente terminou: inseguro
+                count = left;
+            }
+        } finally {
+            this.state = null;
+        }
+
+        // ! Passo 4: todos os clientes ativos terminaram, sistema é seguro
+        state.sequenceLength = length;
+        return count == 0;
+    }
+
+    // Testa um pedaço dos clientes restantes contra o 'work' da rodada mais o que o pedaço já terminou
+    private void scan(int chunk) {
+        int resources = state.resources;
+        int[] need = state.need;
+        int[] allocation = state.allocation;
+        int[] chunkWork = this.chunkWork;
+        int[] remaining = this.remaining;
+        int[] finished = this.finished;
+
+        int from = chunk * CHUNK;
+        int to = Math.min(from + CHUNK, roundSize);
+        int offset = chunk * resources;
+        int stay = from;
+        int leave = from;
+        System.arraycopy(work, 0, chunkWork, offset, resources);
+
+        for (int k = from; k < to; k++) {
+            int i = remaining[k];
+            int row = i * resources;
+            boolean fits = true;
+            for (int j = 0; j < resources; j++) {
+                if (need[row + j] > chunkWork[offset + j]) {
+                    fits = false;
+                    break;
+                }
+            }
+
+            if (fits) {
+                for (int j = 0; j < resources; j++) chunkWork[offset + j] += allocation[row + j];
+                finished[leave++] = i;
+            } else {
+                remaining[stay++] = i; // stay <= k: compacta no lugar
+            }
+        }
+        kept[chunk] = stay - from;
+        done[chunk] = leave - from;
+    }
+
+    // Divide os pedaços de uma rodada entre as threads do pool
+    private class Round extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int first;
+        private final int last;
+
+        Round(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                scan(first);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new Round(first, middle), new Round(middle, last));
+        }
+    }
+
+    private void ensureCapacity(int customers, int resources) {
+        int chunks = (customers + CHUNK - 1) / CHUNK;
+        if (work.length < resources) {
+            work = new int[resources];
+            roundWork = new int[resources];
+        }
+        if (remaining.length < customers) {
+            remaining = new int[customers];
+            finished = new int[customers];
+        }
+        if (kept.length < chunks) {
+            kept = new int[chunks];
+            done = new int[chunks];
+        }
+        if (chunkWork.length < chunks * resources) chunkWork = new int[chunks * resources];
+    }
+}
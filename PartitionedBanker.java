@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * Banqueiro particionado: recursos e clientes são divididos em componentes independentes,
+ * cada um com seu próprio Banker (e portanto sua própria trava e seu próprio estado seguro).
+ *
+ * Dois recursos ficam no mesmo componente quando algum cliente tem demanda máxima positiva
+ * nos dois. Clientes que só tocam recursos de componentes diferentes nunca disputam a mesma
+ * trava, então a vazão cresce com o número de núcleos em vez de parar numa trava global.
+ * A segurança de cada componente é independente: a união de estados seguros disjuntos é segura.
+ *
+ * Quando um cliente novo liga componentes diferentes, eles são fundidos num Banker só, copiando
+ * clientes e alocações. Requisições que estavam esperando num componente fundido são canceladas
+ * por ele e refeitas automaticamente no componente novo.
+ *
+ * Requisições, liberações e consultas acham o componente do cliente sem trava nenhuma: a rota
+ * de cada cliente é um objeto imutável lido com uma leitura volátil. Só registro, remoção e
+ * fusão se serializam entre si. Uma operação que usou a rota de um componente que acabou de ser
+ * fundido recebe -1 dele (o Banker aposentado não tem mais clientes; ver Banker.retire), espera
+ * a fusão terminar e é refeita com a rota nova.
+ */
+class PartitionedBanker {
+    // Componente: um Banker sobre um subconjunto dos recursos
+    private static class Component {
+        final Banker banker;
+        final int[] resources;       // índice global de cada recurso local
+        final boolean[] covers;      // por recurso global: se pertence a este componente
+        final List<Integer> members = new ArrayList<>(); // clientes globais deste componente
+        volatile boolean retired;    // fundido em outro componente
+
+        Component(Banker banker, int[] resources, int globalResources) {
+            this.banker = banker;
+            this.resources = resources;
+            this.covers = new boolean[globalResources];
+            for (int j : resources) covers[j] = true;
+        }
+    }
+
+    // Rota de um cliente: componente e identificador local. Imutável; a fusão troca a rota inteira
+    private static final class Route {
+        final Component component;
+        final int localId;
+
+        Route(Component component, int localId) {
+            this.component = component;
+            this.localId = localId;
+        }
+    }
+
+    private final int resources;
+    private final Supplier<SafetyCheck> safetyChecks;
+
+    // Serializa registro, remoção e fusão; as operações dos clientes não passam por ela
+    private final ReentrantLock registration = new ReentrantLock();
+
+    // Componente de cada recurso global (só usado sob 'registration')
+    private final Component[] componentOf;
+
+    // Rota de cada cliente global (null depois da remoção). Só é escrita sob 'registration';
+    // quando enche, é copiada para um array maior e o campo passa a apontar para a cópia
+    private volatile AtomicReferenceArray<Route> routes = new AtomicReferenceArray<>(16);
+    private int customerCount;
+
+    // Demanda máxima global de cada cliente, para recriá-lo nas fusões (só sob 'registration')
+    private final List<int[]> customerMaximum = new ArrayList<>();
+
+    PartitionedBanker(int[] available, Supplier<SafetyCheck> safetyChecks) {
+        this.resources = available.length;
+        this.safetyChecks = safetyChecks;
+        this.componentOf = new Component[resources];
+
+        // No início cada recurso é um componente próprio
+        for (int j = 0; j < resources; j++) {
+            componentOf[j] = new Component(new Banker(new int[] {available[j]}, 16, safetyChecks.get()), new int[] {j}, resources);
+        }
+    }
+
+    public int getNumberOfResources() {
+        return resources;
+    }
+
+    public int getNumberOfComponents() {
+        registration.lock();
+        try {
+            return (int) Arrays.stream(componentOf).distinct().count();
+        } finally {
+            registration.unlock();
+        }
+    }
+
+    /*
+     * Registra um cliente e devolve seu identificador global (ou -1 se a demanda for inválida).
+     * Se a demanda máxima tocar recursos de componentes diferentes, eles são fundidos primeiro.
+     */
+    public int registerCustomer(int[] maxNeed) {
+        if (maxNeed.length != resources) return -1;
+
+        registration.lock();
+        try {
+            // Componentes tocados pela demanda (sem demanda, o cliente fica no componente do recurso 0)
+            List<Component> touched = new ArrayList<>();
+            for (int j = 0; j < resources; j++) {
+                if (maxNeed[j] > 0 && !touched.contains(componentOf[j])) touched.add(componentOf[j]);
+            }
+            if (touched.isEmpty()) touched.add(componentOf[0]);
+
+            Component component = touched.size() == 1 ? touched.get(0) : merge(touched);
+            int localId = component.banker.registerCustomer(toLocal(component.resources, maxNeed));
+            if (localId < 0) return -1;
+
+            int customer = customerCount++;
+            if (customer == routes.length()) {
+                AtomicReferenceArray<Route> larger = new AtomicReferenceArray<>(2 * customer);
+                for (int k = 0; k < customer; k++) larger.set(k, routes.get(k));
+                routes = larger;
+            }
+            routes.set(customer, new Route(component, localId));
+            customerMaximum.add(Arrays.copyOf(maxNeed, resources));
+            component.members.add(customer);
+            return customer;
+        } finally {
+            registration.unlock();
+        }
+    }
+
+    // O identificador global não é reaproveitado; o cliente só deixa de ser levado nas fusões
+    public int deregisterCustomer(int customerNum) {
+        registration.lock();
+        try {
+            Route route = route(customerNum);
+            if (route == null) return -1;
+            int result = route.component.banker.deregisterCustomer(route.localId);
+            route.component.members.remove(Integer.valueOf(customerNum));
+            routes.set(customerNum, null);
+            return result;
+        } finally {
+            registration.unlock();
+        }
+    }
+
+    /*
+     * Mesmo contrato de Banker.requestResources (0 concedida, -1 inválida ou interrompida).
+     * A espera acontece num future do componente; se o componente for fundido enquanto a
+     * requisição espera, ela é refeita no componente novo.
+     */
+    public int requestResources(int customerNum, int[] request) {
+        while (true) {
+            Route route = route(customerNum);
+            if (route == null) return -1;
+            Component component = route.component;
+            if (!touchesOnly(component, request)) {
+                if (!component.retired) return -1;
+                awaitMerge(); // a rota era de um componente fundido: o novo pode cobrir a requisição
+                continue;
+            }
+            CompletableFuture<Integer> future = component.banker.requestResourcesAsync(route.localId, toLocal(component.resources, request));
+
+            int result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Se a concessão chegou antes do cancelamento, os recursos são do cliente
+                if (!future.cancel(false) && future.getNow(-1) == 0) return 0;
+                return -1;
+            } catch (ExecutionException | CancellationException e) {
+                result = -1;
+            }
+
+            if (result == -1 && component.retired) {
+                awaitMerge(); // cancelada ou recusada pela fusão: tenta no componente novo
+                continue;
+            }
+            return result;
+        }
+    }
+
+    public int releaseResources(int customerNum, int[] release) {
+        while (true) {
+            Route route = route(customerNum);
+            if (route == null) return -1;
+            Component component = route.component;
+            int result = touchesOnly(component, release)
+                    ? component.banker.releaseResources(route.localId, toLocal(component.resources, release))
+                    : -1;
+            if (result == -1 && component.retired) {
+                awaitMerge();
+                continue;
+            }
+            return result;
+        }
+    }
+
+    public int getNeedValue(int customerNum, int valuePos) {
+        while (true) {
+            Route route = route(customerNum);
+            if (route == null) return 0;
+            int local = localIndex(route.component, valuePos);
+            int value = local < 0 ? 0 : route.component.banker.getNeedValue(route.localId, local);
+            if (!route.component.retired) return value;
+            awaitMerge();
+        }
+    }
+
+    public int[] getAllocationRow(int customerNum) {
+        while (true) {
+            Route route = route(customerNum);
+            if (route == null) return new int[resources];
+            int[] row = toGlobal(route.component, route.component.banker.getAllocationRow(route.localId));
+            if (!route.component.retired) return row;
+            awaitMerge();
+        }
+    }
+
+    /*
+     * Funde os componentes num Banker só (sob 'registration', então nenhum registro ou fusão
+     * concorre). Cada componente antigo é aposentado primeiro (Banker.retire), o que congela
+     * seu estado: o que foi concedido ou liberado antes disso está na fotografia devolvida, e
+     * o que chegar depois é recusado e refeito com a rota nova. O componente novo começa
+     * direto com esses clientes e alocações, sem passar pela admissão de requisições.
+     */
+    private Component merge(List<Component> components) {
+        int size = 0;
+        int members = 0;
+        for (Component component : components) {
+            size += component.resources.length;
+            members += component.members.size();
+        }
+
+        int[] merged = new int[size];
+        int[] total = new int[resources];
+        int[] customers = new int[members];
+        int[][] maximum = new int[members][];
+        int[][] allocations = new int[members][];
+        int position = 0;
+        int index = 0;
+        for (Component component : components) {
+            component.retired = true; // antes de aposentar: quem receber -1 dele já vê a marca
+            BankerSnapshot last = component.banker.retire();
+
+            // O total de cada recurso é o disponível mais o que está alocado aos clientes
+            int[] available = last.getAvailable();
+            for (int k = 0; k < component.resources.length; k++) {
+                merged[position++] = component.resources[k];
+                total[component.resources[k]] += available[k];
+            }
+            for (int customer : component.members) {
+                int[] allocation = toGlobal(component, last.getAllocationRow(routes.get(customer).localId));
+                for (int j = 0; j < resources; j++) total[j] += allocation[j];
+                customers[index] = customer;
+                allocations[index] = allocation;
+                index++;
+            }
+        }
+
+        // Cliente k do componente novo fica no slot k; a união de estados seguros disjuntos é segura
+        for (int k = 0; k < members; k++) {
+            maximum[k] = toLocal(merged, customerMaximum.get(customers[k]));
+            allocations[k] = toLocal(merged, allocations[k]);
+        }
+        Component target = new Component(new Banker(toLocal(merged, total), maximum, allocations, safetyChecks.get()), merged, resources);
+        for (int k = 0; k < members; k++) {
+            routes.set(customers[k], new Route(target, k));
+            target.members.add(customers[k]);
+        }
+        for (int j : merged) componentOf[j] = target;
+        return target;
+    }
+
+    // Rota atual do cliente, ou null se ele não existir (ou tiver sido removido)
+    private Route route(int customerNum) {
+        AtomicReferenceArray<Route> routes = this.routes;
+        return customerNum >= 0 && customerNum < routes.length() ? routes.get(customerNum) : null;
+    }
+
+    // Espera a fusão em andamento publicar as rotas novas (só acontece durante uma fusão)
+    private void awaitMerge() {
+        registration.lock();
+        registration.unlock();
+    }
+
+    // O vetor só pode ter valores positivos em recursos do componente do cliente
+    private boolean touchesOnly(Component component, int[] vector) {
+        if (vector.length != resources) return false;
+        for (int j = 0; j < resources; j++) {
+            if (vector[j] != 0 && !component.covers[j]) return false;
+        }
+        return true;
+    }
+
+    private static int localIndex(Component component, int globalIndex) {
+        for (int k = 0; k < component.resources.length; k++) {
+            if (component.resources[k] == globalIndex) return k;
+        }
+        return -1;
+    }
+
+    // Vetor global -> vetor local de um componente (resourceMap: índice global de cada recurso local)
+    private static int[] toLocal(int[] resourceMap, int[] global) {
+        int[] local = new int[resourceMap.length];
+        for (int k = 0; k < local.length; k++) local[k] = global[resourceMap[k]];
+        return local;
+    }
+
+    private int[] toGlobal(Component component, int[] local) {
+        int[] global = new int[resources];
+        for (int k = 0; k < local.length; k++) global[component.resources[k]] = local[k];
+        return global;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+
+/*
+ * Requisição que não pôde ser atendida na hora e está esperando na fila do Banqueiro.
+ *
+ * Cada requisição pendente tem sua própria variável de condição, então uma liberação
+ * acorda apenas a thread cuja requisição acabou de ser concedida, em vez de acordar
+ * todas com 'signalAll'. Os campos mutáveis só são acessados sob a trava do Banqueiro.
+ *
+ * Requisições assíncronas não têm thread esperando: no lugar da condição elas carregam
+ * o CompletableFuture que o Banqueiro completa quando a requisição é concedida.
+ */
+class PendingRequest {
+    final int customer;
+    final int[] request;
+    final Condition condition;
+    final CompletableFuture<Integer> future;
+
+    // Instante (System.nanoTime) em que entrou na fila, para medir o tempo de espera
+    final long enqueuedAt = System.nanoTime();
+
+    // Tamanho da requisição (soma das unidades pedidas) e classe de prioridade do cliente,
+    // usados para ordenar a fila (ver AdmissionPolicy)
+    final long size;
+    int priority;
+
+    // Chave de ordenação calculada pelo Banqueiro a cada varredura da fila
+    long rank;
+
+    // Já recebeu uma reserva do que é devolvido (AGING), para contar cada reserva uma vez
+    boolean reserving;
+
+    // Concedida pelo Banqueiro em nome da thread que espera
+    boolean granted;
+
+    // Cancelada (ex.: o cliente foi removido enquanto esperava)
+    boolean cancelled;
+
+    // Encadeamento da fila de espera (ver WaitQueue)
+    PendingRequest previous;
+    PendingRequest next;
+    boolean queued;
+
+    PendingRequest(int customer, int[] request, Condition condition) {
+        this.customer = customer;
+        this.request = request;
+        this.condition = condition;
+        this.future = null;
+        this.size = sizeOf(request);
+    }
+
+    PendingRequest(int customer, int[] request, CompletableFuture<Integer> future) {
+        this.customer = customer;
+        this.request = request;
+        this.condition = null;
+        this.future = future;
+        this.size = sizeOf(request);
+    }
+
+    private static long sizeOf(int[] request) {
+        long size = 0;
+        for (int value : request) size += value;
+        return size;
+    }
+
+    // Requisição feita por requestResourcesAsync (não há thread esperando por ela)
+    boolean isAsync() {
+        return future != null;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Resultado de uma requisição sem espera ou com prazo (ver Banker.tryRequestResources e
+ * Banker.requestResources com timeout): em vez do -1 de requestResources, diz por que a
+ * requisição não foi concedida.
+ */
+enum RequestResult {
+    GRANTED,         // concedida (na hora ou depois de esperar)
+    NOT_REGISTERED,  // cliente não registrado
+    EXCEEDS_NEED,    // pede mais do que a necessidade restante do cliente
+    INSUFFICIENT,    // não cabe no disponível
+    RESERVED,        // caberia, mas o disponível está reservado para uma requisição mais antiga (AGING)
+    UNSAFE,          // levaria a estado inseguro
+    TIMED_OUT,       // o prazo acabou antes da concessão
+    INTERRUPTED,     // a thread foi interrompida enquanto esperava
+    CANCELLED,       // o cliente foi removido enquanto esperava
+    INVALID;         // vetor com quantidade de recursos errada ou valor negativo
+
+    boolean isGranted() {
+        return this == GRANTED;
+    }
+
+    // Requisição válida que não pode ser atendida agora, mas poderia ser se esperasse
+    boolean mustWait() {
+        return this == INSUFFICIENT || this == RESERVED || this == UNSAFE;
+    }
+
+    // Código no formato de requestResources: 0 se concedida, -1 caso contrário
+    int toCode() {
+        return this == GRANTED ? 0 : -1;
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Estratégia de checagem de segurança do Algoritmo do Banqueiro.
+ *
+ * Cada implementação decide se o estado atual (disponível, alocação e necessidade)
+ * possui alguma sequência segura em que todos os clientes conseguem terminar.
+ * Quando o estado é seguro, a sequência encontrada deve ficar em state.safeSequence
+ * (com state.sequenceLength clientes), pois o Banqueiro a reaproveita nas provas rápidas.
+ * As implementações guardam seus próprios buffers de rascunho, então uma mesma
+ * instância não deve ser usada por duas threads ao mesmo tempo (o Banker a usa
+ * sempre sob sua trava).
+ *
+ * O BankerState avisa cada linha alterada (rowChanged) para que estratégias que guardam
+ * estruturas entre as chamadas as atualizem aos poucos; as demais ignoram o aviso.
+ */
+interface SafetyCheck {
+    boolean isSafe(BankerState state);
+
+    default void rowChanged(BankerState state, int customer) {
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Grava a sequência exata de operações de um Banqueiro (registro, requisição, liberação, ...)
+ * com seus argumentos, decisões e instantes, para ser reproduzida depois pelo TraceReplay.
+ *
+ * Os eventos são registrados sob a trava do Banqueiro, então a ordem no arquivo é a ordem real
+ * em que as decisões foram tomadas. Cada evento é codificado com varints (inteiros de tamanho
+ * variável, com zigzag para aceitar negativos) num buffer em memória, o que deixa um evento
+ * típico com poucos bytes. Quem grava no arquivo é uma thread de fundo: a cada 1 MB acumulado
+ * ela troca o buffer cheio por um vazio e escreve o cheio fora da trava, então o Banqueiro nunca
+ * espera pelo disco (se o disco ficar para trás, o buffer em memória cresce).
+ *
+ * Além das operações, o trace guarda o que muda a ordem das decisões: a política de admissão e
+ * o intervalo de envelhecimento (no cabeçalho e a cada mudança), a classe de prioridade de cada
+ * cliente e as reservas do AGING. A reserva depende do tempo de espera, então ela é gravada
+ * como evento (criada a cada varredura da fila, desfeita no início da seguinte) e a reprodução
+ * a aplica tal como foi gravada, em vez de tentar recriá-la.
+ *
+ * Formato: cabeçalho (MAGIC, quantidade de recursos, total de cada recurso, política e intervalo
+ * de envelhecimento em nanos) seguido de eventos (tipo, nanos desde o evento anterior, cliente,
+ * decisão, os argumentos do tipo e o vetor, quando o tipo tem um).
+ */
+class TraceRecorder {
+    static final int MAGIC = 0x54524332; // "TRC2"
+
+    enum Type {
+        REGISTER(true, 1),            // vetor: demanda máxima; argumento: classe de prioridade
+        DEREGISTER(false, 0),
+        REQUEST(true, 0),             // decisão: ver Outcome
+        RELEASE(true, 0),             // decisão: GRANTED (aplicada) ou INVALID
+        GRANTED_AFTER_WAIT(true, 0),  // concessão de uma requisição que estava esperando
+        ABANDONED(true, 0),           // requisição que saiu da fila sem concessão
+        PRIORITY(false, 1),           // argumento: nova classe de prioridade do cliente
+        POLICY(false, 2),             // sem cliente (-1); argumentos: política e envelhecimento (nanos)
+        RESERVED(true, 0),            // o disponível passa a ser reservado para a requisição (vetor)
+        UNRESERVED(false, 0);         // a reserva do cliente foi desfeita
+
+        final boolean hasVector;
+        final int arguments;
+
+        Type(boolean hasVector, int arguments) {
+            this.hasVector = hasVector;
+            this.arguments = arguments;
+        }
+    }
+
+    enum Outcome {
+        GRANTED,  // concedida na hora (ou liberação aplicada)
+        INVALID,  // cliente não registrado, excede a necessidade ou a alocação
+        WAITING,  // entrou na fila de espera
+        REJECTED, // não admitida agora e não espera (requisição de um lote)
+        RESERVED  // entrou na fila porque o disponível estava reservado para outra (AGING)
+    }
+
+    // Quantidade de bytes acumulados a partir da qual a thread de fundo grava o buffer
+    private static final int BLOCK = 1 << 20;
+
+    private final FileChannel channel;
+    private final Thread writer;
+
+    // Buffer dos eventos ainda não gravados e o que a thread de fundo usa (protegidos por 'this')
+    private ByteBuffer buffer = ByteBuffer.allocate(2 * BLOCK);
+    private ByteBuffer spare = ByteBuffer.allocate(2 * BLOCK);
+    private boolean closing;
+
+    private int resources;
+    private long lastNanos;
+    private long events;
+    private volatile IOException failure;
+
+    TraceRecorder(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.writer = new Thread(this::writeLoop, "banker-trace");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /*
+     * Cabeçalho e estado inicial: os clientes já registrados entram como REGISTER (com a classe
+     * de prioridade atual, 0 para slots além de 'priorities') seguido de uma REQUEST concedida
+     * com a alocação atual. Chamado pelo Banqueiro sob a trava.
+     */
+    synchronized void begin(BankerState state, AdmissionPolicy policy, long agingNanos, int[] priorities) {
+        resources = state.resources;
+        buffer.putInt(MAGIC);
+        putVarint(state.resources);
+        for (int j = 0; j < state.resources; j++) putVarint(state.total[j]);
+        putVarint(policy.ordinal());
+        putVarint(agingNanos);
+        lastNanos = System.nanoTime();
+
+        for (int customer = 0; customer < state.customers; customer++) {
+            if (!state.active[customer]) continue;
+            int priority = customer < priorities.length ? priorities[customer] : 0;
+            record(Type.REGISTER, customer, Outcome.GRANTED, state.row(state.maximum, customer), priority, 0);
+            int[] allocation = state.row(state.allocation, customer);
+            for (int value : allocation) {
+                if (value != 0) {
+                    record(Type.REQUEST, customer, Outcome.GRANTED, allocation);
+                    break;
+                }
+            }
+        }
+    }
+
+    synchronized void record(Type type, int customer, Outcome outcome, int[] vector) {
+        record(type, customer, outcome, vector, 0, 0);
+    }
+
+    // Evento com argumentos (só os 'type.arguments' primeiros são gravados)
+    synchronized void record(Type type, int customer, Outcome outcome, int[] vector, long first, long second) {
+        if (failure != null) return;
+        int size = 64 + 10 * resources;
+        if (buffer.remaining() < size) buffer = grow(buffer, size);
+
+        long now = System.nanoTime();
+        buffer.put((byte) type.ordinal());
+        putVarint(now - lastNanos);
+        putVarint(customer);
+        putVarint(outcome.ordinal());
+        if (type.arguments > 0) putVarint(first);
+        if (type.arguments > 1) putVarint(second);
+        if (type.hasVector) {
+            for (int j = 0; j < resources; j++) putVarint(vector[j]);
+        }
+        lastNanos = now;
+        events++;
+        if (buffer.position() >= BLOCK) notifyAll(); // acorda a thread de fundo
+    }
+
+    synchronized long events() {
+        return events;
+    }
+
+    // Grava o que estiver no buffer, encerra a thread de fundo e fecha o arquivo
+    void close() throws IOException {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer full;
+            boolean stopping;
+            synchronized (this) {
+                while (!closing && buffer.position() < BLOCK) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        closing = true;
+                    }
+                }
+                stopping = closing;
+                full = buffer;
+                buffer = spare;
+                spare = full;
+            }
+
+            full.flip();
+            try {
+                while (full.hasRemaining() && failure == null) channel.write(full);
+            } catch (IOException e) {
+                failure = e;
+                System.err.println("Gravação do trace interrompida: " + e);
+            }
+            full.clear();
+            if (stopping) return;
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int size) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    // Varint com zigzag: valores pequenos (positivos ou negativos) ocupam 1 byte
+    private void putVarint(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Reproduz um trace gravado pelo TraceRecorder contra um Banqueiro novo.
+ *
+ * Modos:
+ *  - sequential: os eventos são aplicados na ordem gravada, numa única thread e o mais rápido
+ *    possível, sem nunca esperar: requisições são admitidas com processBatch (0 concedida,
+ *    -1 inválida, -2 não admitida agora). Política, prioridades e reservas (AGING) são aplicadas
+ *    como foram gravadas. Como a ordem é a mesma, cada decisão deve ser igual à gravada; as
+ *    divergências são contadas por tipo e as primeiras são listadas. Serve de teste de regressão
+ *    de corretude (e de vazão) para mudanças no Banqueiro e nas SafetyChecks.
+ *  - concurrent: cada cliente do trace vira uma tarefa que repete suas próprias requisições e
+ *    liberações com o Banqueiro real (requisições esperam de verdade), no ritmo original
+ *    multiplicado por --speed (0 = sem pausas). Reporta vazão e quantas concessões imediatas
+ *    e esperas houve comparadas com as gravadas. Um cliente cuja requisição não é concedida em
+ *    --timeout segundos (por exemplo, porque outro cliente terminou o trace segurando recursos)
+ *    para de ser reproduzido e é contado como expirado. A política e as prioridades gravadas são
+ *    aplicadas; as reservas surgem da própria espera, como na gravação.
+ *
+ * Uso: java TraceReplay <arquivo> [--mode=sequential|concurrent] [--engine=classic|worklist]
+ *                       [--repeat=1] [--speed=0] [--timeout=10] [--executor=virtual]
+ */
+public class TraceReplay {
+    private static final TraceRecorder.Type[] TYPES = TraceRecorder.Type.values();
+    private static final TraceRecorder.Outcome[] OUTCOMES = TraceRecorder.Outcome.values();
+
+    // Quantas divergências são listadas individualmente
+    private static final int MAX_LISTED = 10;
+
+    // Trace decodificado em vetores paralelos (um elemento por evento)
+    private final int resources;
+    private final int[] total;
+    private final AdmissionPolicy policy;
+    private final long agingNanos;
+    private final int count;
+    private final byte[] types;
+    private final byte[] outcomes;
+    private final int[] customers;
+    private final long[] arguments; // count x 2 (ver TraceRecorder.Type.arguments)
+    private final long[] times;   // nanos desde o primeiro evento
+    private final int[] vectors;  // count x resources (zeros para eventos sem vetor)
+    private final int maxCustomer;
+
+    private TraceReplay(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != TraceRecorder.MAGIC) throw new IOException("Arquivo não é um trace do Banqueiro.");
+        resources = (int) TraceRecorder.getVarint(buffer);
+        total = new int[resources];
+        for (int j = 0; j < resources; j++) total[j] = (int) TraceRecorder.getVarint(buffer);
+        policy = AdmissionPolicy.values()[(int) TraceRecorder.getVarint(buffer)];
+        agingNanos = TraceRecorder.getVarint(buffer);
+
+        int capacity = 1024;
+        byte[] types = new byte[capacity];
+        byte[] outcomes = new byte[capacity];
+        int[] customers = new int[capacity];
+        long[] arguments = new long[capacity * 2];
+        long[] times = new long[capacity];
+        int[] vectors = new int[capacity * resources];
+        int count = 0;
+        int maxCustomer = -1;
+        long time = 0;
+
+        while (buffer.hasRemaining()) {
+            if (count == capacity) {
+                capacity *= 2;
+                types = Arrays.copyOf(types, capacity);
+                outcomes = Arrays.copyOf(outcomes, capacity);
+                customers = Arrays.copyOf(customers, capacity);
+                arguments = Arrays.copyOf(arguments, capacity * 2);
+                times = Arrays.copyOf(times, capacity);
+                vectors = Arrays.copyOf(vectors, capacity * resources);
+            }
+            byte type = buffer.get();
+            time += TraceRecorder.getVarint(buffer);
+            types[count] = type;
+            times[count] = time;
+            customers[count] = (int) TraceRecorder.getVarint(buffer);
+            outcomes[count] = (byte) TraceRecorder.getVarint(buffer);
+            for (int k = 0; k < TYPES[type].arguments; k++) arguments[count * 2 + k] = TraceRecorder.getVarint(buffer);
+            if (TYPES[type].hasVector) {
+                for (int j = 0; j < resources; j++) vectors[count * resources + j] = (int) TraceRecorder.getVarint(buffer);
+            }
+            maxCustomer = Math.max(maxCustomer, customers[count]);
+            count++;
+        }
+
+        this.count = count;
+        this.types = types;
+        this.outcomes = outcomes;
+        this.customers = customers;
+        this.arguments = arguments;
+        this.times = times;
+        this.vectors = vectors;
+        this.maxCustomer = maxCustomer;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Uso: java TraceReplay <arquivo> [--mode=sequential|concurrent] [--engine=classic|worklist] "
+                    + "[--repeat=1] [--speed=0] [--timeout=10] [--executor=virtual]");
+            return;
+        }
+
+        String mode = "sequential";
+        String engine = "classic";
+        int repeat = 1;
+        double speed = 0;
+        long timeoutSeconds = 10;
+        String executor = "virtual";
+
+        for (int k = 1; k < args.length; k++) {
+            String arg = args[k];
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "mode": mode = value; break;
+                case "engine": engine = value; break;
+                case "repeat": repeat = Integer.parseInt(value); break;
+                case "speed": speed = Double.parseDouble(value); break;
+                case "timeout": timeoutSeconds = Long.parseLong(value); break;
+                case "executor": executor = value; break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + arg);
+            }
+        }
+
+        long start = System.nanoTime();
+        TraceReplay trace = new TraceReplay(ByteBuffer.wrap(Files.readAllBytes(Paths.get(args[0]))));
+        System.out.printf("Trace: %d eventos, %d recursos %s, política %s, duração gravada %.1f s (lido em %.0f ms)%n",
+                trace.count, trace.resources, Arrays.toString(trace.total), trace.policy,
+                trace.count == 0 ? 0 : trace.times[trace.count - 1] / 1e9, (System.nanoTime() - start) / 1e6);
+
+        for (int run = 1; run <= repeat; run++) {
+            System.out.println("\n--- Reprodução " + run + " (" + mode + ", " + engine + ") ---");
+            switch (mode) {
+                case "sequential": trace.replaySequential(BankerBenchmark.safetyCheck(engine)); break;
+                case "concurrent": trace.replayConcurrent(BankerBenchmark.safetyCheck(engine), speed, timeoutSeconds, executor); break;
+                default: throw new IllegalArgumentException("Modo desconhecido: " + mode);
+            }
+        }
+    }
+
+    private int[] vector(int event) {
+        return Arrays.copyOfRange(vectors, event * resources, (event + 1) * resources);
+    }
+
+    private int argument(int event, int k) {
+        return (int) arguments[event * 2 + k];
+    }
+
+    // Banqueiro vazio com a política do cabeçalho (o intervalo do Banqueiro é em ms)
+    private Banker newBanker(SafetyCheck safetyCheck) {
+        Banker banker = new Banker(total, maxCustomer + 1, safetyCheck);
+        banker.setAdmissionPolicy(policy, agingMillis(agingNanos));
+        return banker;
+    }
+
+    private static long agingMillis(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    // A requisição entrou na fila na gravação (por falta de recursos, estado inseguro ou reserva)
+    private static boolean waited(TraceRecorder.Outcome outcome) {
+        return outcome == TraceRecorder.Outcome.WAITING || outcome == TraceRecorder.Outcome.RESERVED;
+    }
+
+    // --- Modo sequencial ---
+
+    private void replaySequential(SafetyCheck safetyCheck) {
+        Banker banker = newBanker(safetyCheck);
+        int[] ids = new int[maxCustomer + 1];
+        Arrays.fill(ids, -1);
+
+        // Requisições que a reprodução concedeu na hora mas que esperaram na gravação
+        List<ArrayDeque<int[]>> early = new ArrayList<>();
+        for (int c = 0; c <= maxCustomer; c++) early.add(new ArrayDeque<>());
+
+        // Divergências: decisão gravada (Outcome) x resultado da reprodução (0, -1, -2)
+        long[][] diffs = new long[OUTCOMES.length][3];
+        long decisions = 0;
+        long diverged = 0;
+        int[] none = new int[0];
+        int[][] noVectors = new int[0][];
+
+        long start = System.nanoTime();
+        for (int event = 0; event < count; event++) {
+            int customer = customers[event];
+            TraceRecorder.Outcome recorded = OUTCOMES[outcomes[event]];
+            int[] vector = TYPES[types[event]].hasVector ? vector(event) : null;
+            int result;
+            int expected;
+
+            switch (TYPES[types[event]]) {
+                case REGISTER:
+                    ids[customer] = banker.registerCustomer(vector, argument(event, 0));
+                    result = ids[customer] < 0 ? -1 : 0;
+                    expected = 0;
+                    break;
+                case DEREGISTER:
+                    result = banker.deregisterCustomer(ids[customer]);
+                    early.get(customer).clear();
+                    expected = 0;
+                    break;
+                case REQUEST:
+                    result = banker.processBatch(none, noVectors, new int[] {ids[customer]}, new int[][] {vector})[0];
+                    expected = recorded == TraceRecorder.Outcome.GRANTED ? 0 : recorded == TraceRecorder.Outcome.INVALID ? -1 : -2;
+                    if (result == 0 && waited(recorded)) early.get(customer).add(vector);
+                    break;
+                case RELEASE:
+                    result = banker.releaseResources(ids[customer], vector);
+                    expected = recorded == TraceRecorder.Outcome.GRANTED ? 0 : -1;
+                    break;
+                case GRANTED_AFTER_WAIT:
+                    // Se a reprodução já concedeu essa requisição na hora, a divergência já foi contada
+                    if (removeEarly(early.get(customer), vector)) continue;
+                    result = banker.processBatch(none, noVectors, new int[] {ids[customer]}, new int[][] {vector})[0];
+                    expected = 0;
+                    break;
+                case ABANDONED:
+                    // Gravada sem concessão, mas concedida na reprodução: devolve para voltar ao mesmo estado
+                    if (removeEarly(early.get(customer), vector)) banker.releaseResources(ids[customer], vector);
+                    continue;
+                case PRIORITY:
+                    banker.setPriority(ids[customer], argument(event, 0));
+                    continue;
+                case POLICY:
+                    banker.setAdmissionPolicy(AdmissionPolicy.values()[argument(event, 0)], agingMillis(arguments[event * 2 + 1]));
+                    continue;
+                case RESERVED:
+                    banker.setReplayedReservation(vector);
+                    continue;
+                case UNRESERVED:
+                    banker.setReplayedReservation(null);
+                    continue;
+                default:
+                    continue;
+            }
+
+            decisions++;
+            if (result != expected) {
+                diverged++;
+                diffs[recorded.ordinal()][-result]++;
+                if (diverged <= MAX_LISTED) {
+                    System.out.printf("  evento %d: %s cliente %d %s gravado %s, reproduzido %d%n", event, TYPES[types[event]],
+                            customer, vector == null ? "" : Arrays.toString(vector), recorded, result);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("Eventos: %d em %.1f ms (%.0f eventos/s)%n", count, elapsed / 1e6, count / (elapsed / 1e9));
+        System.out.println("Decisões comparadas: " + decisions + ", divergentes: " + diverged);
+        if (diverged > 0) {
+            System.out.println("Divergências (gravado -> reproduzido 0 / -1 / -2):");
+            for (TraceRecorder.Outcome outcome : OUTCOMES) {
+                long[] row = diffs[outcome.ordinal()];
+                if (row[0] + row[1] + row[2] > 0) System.out.printf("  %-9s %d / %d / %d%n", outcome, row[0], row[1], row[2]);
+            }
+        }
+    }
+
+    private static boolean removeEarly(ArrayDeque<int[]> early, int[] vector) {
+        for (Iterator<int[]> it = early.iterator(); it.hasNext(); ) {
+            if (Arrays.equals(it.next(), vector)) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- Modo concorrente ---
+
+    private void replayConcurrent(SafetyCheck safetyCheck, double speed, long timeoutSeconds, String executorKind)
+            throws InterruptedException {
+        Banker banker = newBanker(safetyCheck);
+
+        // Eventos de cada cliente, na ordem gravada (mudanças de política, sem cliente, não entram:
+        // neste modo vale a política do cabeçalho)
+        List<List<Integer>> perCustomer = new ArrayList<>();
+        for (int c = 0; c <= maxCustomer; c++) perCustomer.add(new ArrayList<>());
+        for (int event = 0; event < count; event++) {
+            if (customers[event] >= 0) perCustomer.get(customers[event]).add(event);
+        }
+
+        long recordedImmediate = 0;
+        long recordedWaits = 0;
+        for (int event = 0; event < count; event++) {
+            if (TYPES[types[event]] != TraceRecorder.Type.REQUEST) continue;
+            if (outcomes[event] == TraceRecorder.Outcome.GRANTED.ordinal()) recordedImmediate++;
+            if (waited(OUTCOMES[outcomes[event]])) recordedWaits++;
+        }
+
+        LongAdder immediate = new LongAdder();
+        LongAdder waited = new LongAdder();
+        LongAdder timedOut = new LongAdder();
+        LongAdder operations = new LongAdder();
+
+        ExecutorService executor = LoadDriver.createExecutor(executorKind);
+        long start = System.nanoTime();
+        for (int c = 0; c <= maxCustomer; c++) {
+            List<Integer> events = perCustomer.get(c);
+            if (events.isEmpty()) continue;
+            executor.execute(() -> {
+                int id = -1;
+                try {
+                    for (int k = 0; k < events.size(); k++) {
+                        int event = events.get(k);
+                        TraceRecorder.Type type = TYPES[types[event]];
+                        // Concessões depois da espera, abandonos e reservas acontecem sozinhos neste modo
+                        if (type == TraceRecorder.Type.GRANTED_AFTER_WAIT || type == TraceRecorder.Type.ABANDONED
+                                || type == TraceRecorder.Type.RESERVED || type == TraceRecorder.Type.UNRESERVED) continue;
+                        if (speed > 0) {
+                            long delay = start + (long) (times[event] / speed) - System.nanoTime();
+                            if (delay > 0) TimeUnit.NANOSECONDS.sleep(delay);
+                        }
+
+                        int[] vector = type.hasVector ? vector(event) : null;
+                        if (type == TraceRecorder.Type.REGISTER) {
+                            id = banker.registerCustomer(vector, argument(event, 0));
+                        } else if (type == TraceRecorder.Type.PRIORITY) {
+                            banker.setPriority(id, argument(event, 0));
+                        } else if (type == TraceRecorder.Type.DEREGISTER) {
+                            banker.deregisterCustomer(id);
+                        } else if (type == TraceRecorder.Type.RELEASE) {
+                            banker.releaseResources(id, vector);
+                        } else if (outcomes[event] != TraceRecorder.Outcome.GRANTED.ordinal() && !waited(OUTCOMES[outcomes[event]])) {
+                            // Inválida ou de um lote: não espera
+                            banker.processBatch(new int[0], new int[0][], new int[] {id}, new int[][] {vector});
+                        } else {
+                            CompletableFuture<Integer> future = banker.requestResourcesAsync(id, vector);
+                            if (future.isDone()) {
+                                immediate.increment();
+                            } else {
+                                waited.increment();
+                                // Abandonada na gravação: espera só o tempo que esperou originalmente
+                                long wait = abandonedAfter(events, k, vector);
+                                try {
+                                    if (wait >= 0) {
+                                        future.get((long) (speed > 0 ? wait / speed : wait), TimeUnit.NANOSECONDS);
+                                    } else {
+                                        future.get(timeoutSeconds, TimeUnit.SECONDS);
+                                    }
+                                } catch (TimeoutException e) {
+                                    future.cancel(false);
+                                    if (wait < 0) {
+                                        // Nunca concedida: o resto das operações do cliente já não corresponde ao trace
+                                        timedOut.increment();
+                                        return;
+                                    }
+                                }
+                            }
+                        }
+                        operations.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Falha na reprodução: " + e.getCause());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("Operações: %d em %.1f ms (%.0f operações/s)%n", operations.sum(), elapsed / 1e6,
+                operations.sum() / (elapsed / 1e9));
+        System.out.println("Concessões imediatas: " + immediate.sum() + " (gravadas: " + recordedImmediate + ")");
+        System.out.println("Esperas: " + waited.sum() + " (gravadas: " + recordedWaits + "), expiradas: " + timedOut.sum());
+        System.out.println(banker.getMetrics().snapshot());
+    }
+
+    // Nanos entre a requisição e seu abandono na gravação, ou -1 se ela não foi abandonada
+    private long abandonedAfter(List<Integer> events, int position, int[] vector) {
+        int request = events.get(position);
+        for (int k = position + 1; k < events.size(); k++) {
+            int event = events.get(k);
+            TraceRecorder.Type type = TYPES[types[event]];
+            if (type == TraceRecorder.Type.REQUEST || type == TraceRecorder.Type.RELEASE) return -1;
+            if (type == TraceRecorder.Type.GRANTED_AFTER_WAIT && Arrays.equals(vector(event), vector)) return -1;
+            if (type == TraceRecorder.Type.ABANDONED && Arrays.equals(vector(event), vector)) return times[event] - times[request];
+        }
+        return -1;
+    }
+}
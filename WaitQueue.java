@@ -0,0 +1,44 @@
+/*
+ * Fila FIFO intrusiva de requisições pendentes.
+ * Inserir e remover (inclusive do meio, quando uma espera é interrompida) custam O(1)
+ * e não alocam nós extras. Deve ser usada sob a trava do Banqueiro.
+ */
+class WaitQueue {
+    private PendingRequest head;
+    private PendingRequest tail;
+    private int size;
+
+    void add(PendingRequest pending) {
+        pending.previous = tail;
+        pending.next = null;
+        if (tail == null) head = pending;
+        else tail.next = pending;
+        tail = pending;
+        pending.queued = true;
+        size++;
+    }
+
+    void remove(PendingRequest pending) {
+        if (!pending.queued) return;
+        if (pending.previous == null) head = pending.next;
+        else pending.previous.next = pending.next;
+        if (pending.next == null) tail = pending.previous;
+        else pending.next.previous = pending.previous;
+        pending.previous = null;
+        pending.next = null;
+        pending.queued = false;
+        size--;
+    }
+
+    PendingRequest first() {
+        return head;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
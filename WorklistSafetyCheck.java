@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/*
+ * Checagem de segurança incremental baseada em filas ordenadas por recurso.
+ *
+ * Para cada recurso j os clientes ficam ordenados pela necessidade need[i][j].
+ * Um ponteiro por recurso avança enquanto a necessidade do próximo cliente da fila
+ * couber em work[j]; cada avanço conta mais um recurso "satisfeito" para aquele cliente.
+ * Quando os m recursos de um cliente estão satisfeitos ele entra na lista de prontos.
+ * Terminar um cliente só faz crescer 'work', então cada ponteiro apenas avança e cada
+ * cliente é reexaminado somente quando algum recurso dele passa a caber no trabalho.
+ *
+ * As filas são mantidas entre as chamadas: o BankerState avisa cada linha alterada
+ * (rowChanged) e a próxima checagem só reposiciona as entradas cuja necessidade mudou, com
+ * busca binária e um deslocamento no vetor da fila. Uma concessão ou liberação custa então
+ * O(m log n) mais o deslocamento, em vez de reordenar tudo (O(m · n log n)); a simulação
+ * continua O(n · m). As filas só são remontadas do zero na primeira checagem de um estado e
+ * quando os slots passam da capacidade.
+ *
+ * A simulação é O(n · m) sempre, contra O(n² · m) no pior caso da versão clássica; mas em
+ * estados comuns a clássica termina em poucas passadas e acessa a memória em sequência, então
+ * no BankerBenchmark (cenário decide, 1 thread) as duas ficam próximas: 2,2x mais rápida com
+ * 10 mil clientes x 4 recursos, 0,7x com 10 mil x 32 e 0,65x com 50 mil x 4. Por isso a padrão
+ * continua a clássica; esta compensa quando a ordem dos slots obriga a clássica a muitas passadas.
+ */
+class WorklistSafetyCheck implements SafetyCheck {
+    // Necessidade guardada na fila para slots sem cliente: ordena no fim e nunca cabe no trabalho
+    private static final int ABSENT = Integer.MAX_VALUE;
+
+    // Estado ao qual as filas correspondem (null = remontar na próxima checagem)
+    private BankerState owner;
+
+    // Uma fila por recurso com (necessidade << 32 | cliente), ordenada; a fila j começa em
+    // j * capacity e tem 'slots' entradas
+    private long[] queues = new long[0];
+    private int capacity;
+    private int slots;
+
+    // Necessidade de cada slot como está nas filas (slots x resources)
+    private int[] queuedNeed = new int[0];
+
+    // Slots alterados desde a última checagem (sem repetição)
+    private int[] changed = new int[0];
+    private boolean[] isChanged = new boolean[0];
+    private int changedCount;
+
+    // Buffers de rascunho da simulação (reutilizados a cada chamada)
+    private int[] work = new int[0];
+    private int[] cursor = new int[0];
+    private int[] satisfied = new int[0];
+    private int[] ready = new int[0];
+
+    @Override
+    public void rowChanged(BankerState state, int customer) {
+        if (state != owner || customer >= slots || isChanged[customer]) return;
+        isChanged[customer] = true;
+        changed[changedCount++] = customer;
+    }
+
+    @Override
+    public boolean isSafe(BankerState state) {
+        int resources = state.resources;
+        int[] allocation = state.allocation;
+
+        if (state != owner || state.customers > capacity) {
+            rebuild(state);
+        } else {
+            // Slots novos entram no fim das filas como ausentes e são reposicionados como alterados
+            while (slots < state.customers) {
+                for (int j = 0; j < resources; j++) {
+                    queues[j * capacity + slots] = ((long) ABSENT << 32) | slots;
+                    queuedNeed[slots * resources + j] = ABSENT;
+                }
+                isChanged[slots] = true;
+                changed[changedCount++] = slots;
+                slots++;
+            }
+            for (int k = 0; k < changedCount; k++) {
+                int i = changed[k];
+                isChanged[i] = false;
+                relocate(state, i);
+            }
+            changedCount = 0;
+        }
+
+        // ! Passo 1: Trabalho = Disponível e nenhum recurso satisfeito ainda
+        System.arraycopy(state.available, 0, work, 0, resources);
+        Arrays.fill(satisfied, 0, slots, 0);
+        Arrays.fill(cursor, 0, resources, 0);
+
+        int readyCount = 0;
+        for (int j = 0; j < resources; j++) {
+            readyCount = advance(state, j, readyCount);
+        }
+        // Sem recursos, todo cliente ativo já está pronto
+        if (resources == 0) {
+            for (int i = 0; i < slots; i++) {
+                if (state.active[i]) ready[readyCount++] = i;
+            }
+        }
+
+        // ! Passos 2 e 3: termina os clientes prontos e devolve sua alocação ao trabalho
+        int[] sequence = state.safeSequence;
+        int finished = 0;
+        while (readyCount > 0) {
+            int i = ready[--readyCount];
+            sequence[finished++] = i;
+
+            int row = i * resources;
+            for (int j = 0; j < resources; j++) {
+                int returned = allocation[row + j];
+                if (returned > 0) {
+                    work[j] += returned;
+                    readyCount = advance(state, j, readyCount);
+                }
+            }
+        }
+
+        // ! Passo 4: Todos os ativos terminaram, sistema é seguro
+        state.sequenceLength = finished;
+        return finished == state.activeCustomers;
+    }
+
+    // Avança a fila do recurso j enquanto a necessidade couber em work[j]
+    private int advance(BankerState state, int j, int readyCount) {
+        int base = j * capacity;
+        int position = cursor[j];
+        long limit = work[j];
+        int resources = state.resources;
+        boolean[] active = state.active;
+        while (position < slots && (queues[base + position] >>> 32) <= limit) {
+            int i = (int) queues[base + position];
+            if (active[i] && ++satisfied[i] == resources) ready[readyCount++] = i;
+            position++;
+        }
+        cursor[j] = position;
+        return readyCount;
+    }
+
+    // Move as entradas do slot para a posição da necessidade atual, em cada fila em que ela mudou
+    private void relocate(BankerState state, int i) {
+        int resources = state.resources;
+        int row = i * resources;
+        for (int j = 0; j < resources; j++) {
+            int need = state.active[i] ? state.need[row + j] : ABSENT;
+            if (need == queuedNeed[row + j]) continue;
+
+            int base = j * capacity;
+            long oldKey = ((long) queuedNeed[row + j] << 32) | i;
+            long newKey = ((long) need << 32) | i;
+            int from = Arrays.binarySearch(queues, base, base + slots, oldKey);
+            if (newKey > oldKey) {
+                int to = -Arrays.binarySearch(queues, from + 1, base + slots, newKey) - 2;
+                System.arraycopy(queues, from + 1, queues, from, to - from);
+                queues[to] = newKey;
+            } else {
+                int to = -Arrays.binarySearch(queues, base, from, newKey) - 1;
+                System.arraycopy(queues, to, queues, to + 1, from - to);
+                queues[to] = newKey;
+            }
+            queuedNeed[row + j] = need;
+        }
+    }
+
+    // Monta as filas do zero para o estado (primeira checagem ou slots além da capacidade)
+    private void rebuild(BankerState state) {
+        int resources = state.resources;
+        slots = state.customers;
+        capacity = Math.max(16, Integer.highestOneBit(Math.max(1, slots)) * 2);
+        owner = state;
+
+        if (queues.length < capacity * resources) queues = new long[capacity * resources];
+        if (queuedNeed.length < capacity * resources) queuedNeed = new int[capacity * resources];
+        if (changed.length < capacity) {
+            changed = new int[capacity];
+            isChanged = new boolean[capacity];
+            satisfied = new int[capacity];
+            ready = new int[capacity];
+        }
+        Arrays.fill(isChanged, false);
+        changedCount = 0;
+        if (work.length < resources) {
+            work = new int[resources];
+            cursor = new int[resources];
+        }
+
+        for (int i = 0; i < slots; i++) {
+            for (int j = 0; j < resources; j++) {
+                queuedNeed[i * resources + j] = state.active[i] ? state.need[i * resources + j] : ABSENT;
+            }
+        }
+        for (int j = 0; j < resources; j++) {
+            int base = j * capacity;
+            for (int i = 0; i < slots; i++) queues[base + i] = ((long) queuedNeed[i * resources + j] << 32) | i;
+            Arrays.sort(queues, base, base + slots);
+        }
+    }
+}